@@ -13,7 +13,6 @@ import android.widget.Toast;
 
 import com.p_v.flexiblecalendar.FlexibleCalendarView;
 import com.p_v.flexiblecalendar.entity.CalendarEvent;
-import com.p_v.flexiblecalendar.exception.HighValueException;
 import com.p_v.flexiblecalendar.view.BaseCellView;
 
 import java.util.ArrayList;
@@ -154,10 +153,6 @@ public class CalendarActivity3 extends ActionBarActivity implements DatePickerDi
 
     @Override
     public void onDateSet(DatePicker view, int year, int monthOfYear, int dayOfMonth) {
-        try{
-            calendarView.selectDate(year,monthOfYear,dayOfMonth);
-        }catch(HighValueException e){
-            e.printStackTrace();
-        }
+        calendarView.selectDate(year,monthOfYear,dayOfMonth);
     }
 }
@@ -38,11 +38,10 @@ public class ExampleCellView3 extends BaseCellView{
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if(!getStateSet().contains(STATE_SELECTED) && !getStateSet().contains(SELECTED_TODAY) &&
-                getStateSet().contains(STATE_REGULAR) && hasEvents){
+        if(!hasState(STATE_SELECTED) && hasState(STATE_REGULAR) && hasEvents){
             this.setBackgroundColor(Color.BLUE);
         }
-        if(getStateSet().contains(STATE_SELECTED) && hasEvents){
+        if(hasState(STATE_SELECTED) && hasEvents){
             this.setBackgroundResource(R.drawable.cell_red_background);
         }
     }
@@ -51,7 +50,6 @@ public class ExampleCellView3 extends BaseCellView{
     public void setEvents(List<? extends Event> colorList) {
         this.hasEvents = colorList !=null && !colorList.isEmpty();
         invalidate();
-        requestLayout();
     }
 
 }
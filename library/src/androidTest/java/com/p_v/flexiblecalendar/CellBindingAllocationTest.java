@@ -0,0 +1,175 @@
+package com.p_v.flexiblecalendar;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.p_v.flexiblecalendar.entity.CalendarEvent;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventCountsByDay;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+import com.p_v.flexiblecalendar.view.BaseCellView;
+import com.p_v.flexiblecalendar.view.CircularEventCellView;
+import com.p_v.flexiblecalendar.view.EventCountCellView;
+import com.p_v.flexiblecalendar.view.IDateCellViewDrawer;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Binding the cells of a month page which was already bound allocates nothing,
+ * including the decoration of the cells with the events and the event counts
+ */
+public class CellBindingAllocationTest extends AndroidTestCase {
+
+    private static final int CELL_COUNT = 42;
+
+    /**
+     * Days having events displayed by February 2016, the first one is displayed outside the month
+     */
+    private static final int[][] EVENT_DAYS = {{2016, 0, 31}, {2016, 1, 3}, {2016, 1, 10}, {2016, 1, 11},
+            {2016, 1, 25}};
+
+    private static final int REGULAR_CELLS = 0;
+    private static final int CIRCULAR_EVENT_CELLS = 1;
+    private static final int EVENT_COUNT_CELLS = 2;
+
+    public void testRebindingTheCellsDoesNotAllocate(){
+        assertRebindingDoesNotAllocate(createAdapter(REGULAR_CELLS, null));
+    }
+
+    public void testRebindingTheEventCellsDoesNotAllocate(){
+        assertRebindingDoesNotAllocate(createAdapter(CIRCULAR_EVENT_CELLS, new PageEventFetcher(false)));
+    }
+
+    public void testRebindingTheEventCountCellsDoesNotAllocate(){
+        assertRebindingDoesNotAllocate(createAdapter(EVENT_COUNT_CELLS, new PageEventFetcher(true)));
+    }
+
+    public void testRebindingTheEventCountCellsCountingTheEventsDoesNotAllocate(){
+        assertRebindingDoesNotAllocate(createAdapter(EVENT_COUNT_CELLS, new PageEventFetcher(false)));
+    }
+
+    private FlexibleCalendarGridAdapter createAdapter(final int cells,
+                                                      FlexibleCalendarGridAdapter.MonthEventFetcher fetcher){
+        FlexibleCalendarGridAdapter adapter = new FlexibleCalendarGridAdapter(getContext(), 2016, 1,
+                true, true, Calendar.SUNDAY, false);
+        adapter.setCellViewDrawer(new IDateCellViewDrawer() {
+            @Override
+            public void setCalendarView(FlexibleCalendarView.CalendarView calendarView) {
+            }
+
+            @Override
+            public BaseCellView getCellView(int position, View convertView, ViewGroup parent, int cellType) {
+                if(cells == REGULAR_CELLS || convertView != null){
+                    //bind the convert view
+                    return (BaseCellView) convertView;
+                }
+                return cells == CIRCULAR_EVENT_CELLS ?
+                        new CircularEventCellView(getContext()) : new EventCountCellView(getContext());
+            }
+        });
+        if(fetcher != null){
+            adapter.setMonthEventFetcher(fetcher);
+        }
+        assertEquals(CELL_COUNT, adapter.getCount());
+        return adapter;
+    }
+
+    private void assertRebindingDoesNotAllocate(FlexibleCalendarGridAdapter adapter){
+        ViewGroup parent = new FrameLayout(getContext());
+        BaseCellView[] cellViews = new BaseCellView[CELL_COUNT];
+        for(int position = 0; position < CELL_COUNT; position++){
+            cellViews[position] = adapter.createCellView(parent, adapter.getCellType(position));
+        }
+        //warm up, the cell states, the day texts and the page events are computed on the first bind
+        bindCells(adapter, cellViews, parent);
+        bindCells(adapter, cellViews, parent);
+
+        Debug.startAllocCounting();
+        try{
+            Debug.resetThreadAllocCount();
+            int allocCount = Debug.getThreadAllocCount();
+            bindCells(adapter, cellViews, parent);
+            assertEquals(allocCount, Debug.getThreadAllocCount());
+        }finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private static void bindCells(FlexibleCalendarGridAdapter adapter, BaseCellView[] cellViews, ViewGroup parent){
+        for(int position = 0; position < cellViews.length; position++){
+            assertSame(cellViews[position], adapter.getView(position, cellViews[position], parent));
+        }
+    }
+
+    /**
+     * Fetcher returning the same events and counts, built up front, for every fetch
+     */
+    private static class PageEventFetcher implements FlexibleCalendarGridAdapter.MonthEventFetcher {
+
+        private final boolean hasEventCounts;
+        private final EventsByDay events = new EventsByDay();
+        private final EventCountsByDay counts = new EventCountsByDay(0);
+
+        PageEventFetcher(boolean hasEventCounts){
+            this.hasEventCounts = hasEventCounts;
+            List<Event> dayEvents = Arrays.<Event>asList(new CalendarEvent(android.R.color.black),
+                    new CalendarEvent(android.R.color.white));
+            for(int i = 0; i < EVENT_DAYS.length; i++){
+                int[] day = EVENT_DAYS[i];
+                int count = 1 + i % dayEvents.size();
+                events.put(day[0], day[1], day[2], dayEvents.subList(0, count));
+                counts.put(EventsByDay.getDayKey(day[0], day[1], day[2]), count, null);
+            }
+        }
+
+        @Override
+        public List<? extends Event> getEventsForTheDay(int year, int month, int day) {
+            return events.get(year, month, day);
+        }
+
+        @Override
+        public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                int endYear, int endMonth, int endDay) {
+            return events;
+        }
+
+        @Override
+        public boolean hasEventCounts() {
+            return hasEventCounts;
+        }
+
+        @Override
+        public EventCountsByDay getEventCountsForTheRange(int maxColors, int startYear, int startMonth, int startDay,
+                                                          int endYear, int endMonth, int endDay) {
+            return counts;
+        }
+
+        @Override
+        public int getEventDayMask(int year, int month) {
+            return FlexibleCalendarView.ALL_DAYS_MASK;
+        }
+
+        @Override
+        public EventsByDay getCachedEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                      int endYear, int endMonth, int endDay) {
+            return null;
+        }
+
+        @Override
+        public EventCountsByDay getCachedEventCountsForTheRange(int maxColors, int startYear, int startMonth,
+                                                                int startDay, int endYear, int endMonth, int endDay) {
+            return null;
+        }
+
+        @Override
+        public EventsByDay getSnapshotEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                        int endYear, int endMonth, int endDay) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.p_v.flexiblecalendar.provider;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Queries and per day grouping of the {@link CursorEventProvider}, fed with a {@link MatrixCursor}
+ */
+public class CursorEventProviderTest extends AndroidTestCase {
+
+    private static final String[] COLUMNS = {"year", "month", "day", "color", "id"};
+
+    /**
+     * Rows of the table as year, month, day, color, id, not sorted by day
+     */
+    private final List<long[]> rows = new ArrayList<>();
+    /**
+     * Ranges of the queries made by the provider
+     */
+    private final List<int[]> queries = new ArrayList<>();
+    private CursorEventProvider provider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        addRow(2016, 1, 10, 1, 100);
+        addRow(2016, 0, 31, 2, 101);
+        addRow(2016, 1, 10, 3, 102);
+        addRow(2016, 1, 1, 1, 103);
+        addRow(2016, 2, 5, 4, 104);
+        addRow(2016, 3, 2, 5, 105);
+        provider = new CursorEventProvider(new CursorEventProvider.QueryHandler() {
+            @Override
+            public Cursor query(int startYear, int startMonth, int startDay, int endYear, int endMonth, int endDay) {
+                queries.add(new int[]{startYear, startMonth, startDay, endYear, endMonth, endDay});
+                int startEpochDay = FlexibleCalendarHelper.toEpochDay(startYear, startMonth, startDay);
+                int endEpochDay = FlexibleCalendarHelper.toEpochDay(endYear, endMonth, endDay);
+                MatrixCursor cursor = new MatrixCursor(COLUMNS);
+                for(long[] row : rows){
+                    int epochDay = FlexibleCalendarHelper.toEpochDay((int) row[0], (int) row[1], (int) row[2]);
+                    if(epochDay >= startEpochDay && epochDay <= endEpochDay){
+                        cursor.addRow(new Object[]{row[0], row[1], row[2], row[3], row[4]});
+                    }
+                }
+                return cursor;
+            }
+
+            @Override
+            public void readRow(Cursor cursor, CursorEventProvider.EventRow row) {
+                row.year = cursor.getInt(0);
+                row.month = cursor.getInt(1);
+                row.day = cursor.getInt(2);
+                row.color = cursor.getInt(3);
+                row.id = cursor.getLong(4);
+            }
+
+            @Override
+            public boolean getChangedMonth(Uri uri, int[] yearMonth) {
+                return false;
+            }
+        });
+    }
+
+    private void addRow(int year, int month, int day, int color, long id){
+        rows.add(new long[]{year, month, day, color, id});
+    }
+
+    public void testQueriesTheMissingMonthsOnce(){
+        provider.getEventsForTheRange(2016, 0, 25, 2016, 2, 6);
+        assertEquals(1, queries.size());
+        assertTrue(Arrays.equals(new int[]{2016, 0, 1, 2016, 2, 31}, queries.get(0)));
+
+        // all the months of the range are loaded
+        provider.getEventsForTheRange(2016, 1, 1, 2016, 1, 29);
+        provider.getEventsForTheDay(2016, 2, 31);
+        assertEquals(1, queries.size());
+
+        // only the month not loaded yet is queried
+        provider.getEventsForTheRange(2016, 1, 22, 2016, 3, 3);
+        assertEquals(2, queries.size());
+        assertTrue(Arrays.equals(new int[]{2016, 3, 1, 2016, 3, 30}, queries.get(1)));
+    }
+
+    public void testGroupsTheEventsByDay(){
+        EventsByDay eventsByDay = provider.getEventsForTheRange(2016, 0, 31, 2016, 2, 4);
+
+        assertEquals(3, eventsByDay.size());
+        assertEventIds(eventsByDay.get(2016, 0, 31), 101);
+        assertEventIds(eventsByDay.get(2016, 1, 1), 103);
+        // the events of a day keep the order of the cursor
+        assertEventIds(eventsByDay.get(2016, 1, 10), 100, 102);
+        assertNull(eventsByDay.get(2016, 1, 2));
+        // the days outside the range are not returned even though their month is queried
+        assertNull(eventsByDay.get(2016, 2, 5));
+        assertEquals(4, provider.getEventsForTheDay(2016, 2, 5).get(0).getColor());
+    }
+
+    public void testReusesTheEventsOfInvalidatedMonths(){
+        Event unchanged = provider.getEventsForTheDay(2016, 1, 10).get(0);
+        Event recolored = provider.getEventsForTheDay(2016, 1, 10).get(1);
+
+        rows.set(2, new long[]{2016, 1, 10, 6, 102});
+        provider.invalidateMonth(2016, 1);
+        List<? extends Event> events = provider.getEventsForTheDay(2016, 1, 10);
+
+        assertEquals(2, queries.size());
+        assertSame(unchanged, events.get(0));
+        assertNotSame(recolored, events.get(1));
+        assertEquals(6, events.get(1).getColor());
+    }
+
+    public void testSharesTheEventsOfRecurringRows(){
+        addRow(2016, 1, 20, 1, 100);
+
+        List<? extends Event> first = provider.getEventsForTheDay(2016, 1, 10);
+        List<? extends Event> second = provider.getEventsForTheDay(2016, 1, 20);
+
+        assertSame(first.get(0), second.get(0));
+    }
+
+    private static void assertEventIds(List<? extends Event> events, long... ids){
+        assertNotNull(events);
+        assertEquals(ids.length, events.size());
+        for(int i = 0; i < ids.length; i++){
+            assertEquals(ids[i], ((CursorEventProvider.CursorEvent) events.get(i)).getId());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.p_v.flexiblecalendar;
+
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.List;
+
+/**
+ * Range data provider backed by a per day {@link FlexibleCalendarView.EventDataProvider}.
+ * Used for keeping the per day provider working with the range based event fetching.
+ * If a {@link FlexibleCalendarView.EventDayMaskProvider} is available, the per day provider
+ * is called only for the days having events
+ *
+ * @author p-v
+ */
+public class DailyEventRangeDataProvider implements FlexibleCalendarView.EventRangeDataProvider,
+        FlexibleCalendarView.EventDayMaskProvider {
+
+    private final FlexibleCalendarView.EventDataProvider eventDataProvider;
+    private final FlexibleCalendarView.EventDayMaskProvider eventDayMaskProvider;
+
+    /**
+     * Uses the per day provider as the mask provider if it implements
+     * {@link FlexibleCalendarView.EventDayMaskProvider}
+     */
+    public DailyEventRangeDataProvider(FlexibleCalendarView.EventDataProvider eventDataProvider){
+        this(eventDataProvider, eventDataProvider instanceof FlexibleCalendarView.EventDayMaskProvider ?
+                (FlexibleCalendarView.EventDayMaskProvider) eventDataProvider : null);
+    }
+
+    /**
+     * @param eventDataProvider per day provider
+     * @param eventDayMaskProvider provider of the days having events, null for calling the per day
+     *                             provider for every day
+     */
+    public DailyEventRangeDataProvider(FlexibleCalendarView.EventDataProvider eventDataProvider,
+                                       FlexibleCalendarView.EventDayMaskProvider eventDayMaskProvider){
+        this.eventDataProvider = eventDataProvider;
+        this.eventDayMaskProvider = eventDayMaskProvider;
+    }
+
+    @Override
+    public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                            int endYear, int endMonth, int endDay) {
+        EventsByDay eventsByDay = new EventsByDay();
+        int year = startYear;
+        int month = startMonth;
+        int day = startDay;
+        int endKey = EventsByDay.getDayKey(endYear, endMonth, endDay);
+        int mask = getEventDayMask(year, month);
+        while(EventsByDay.getDayKey(year, month, day) <= endKey){
+            if((mask & (1 << (day - 1))) != 0){
+                List<? extends Event> events = eventDataProvider.getEventsForTheDay(year, month, day);
+                eventsByDay.put(year, month, day, events);
+            }
+            if(day < FlexibleCalendarHelper.getDaysInMonth(year, month)){
+                day++;
+            }else{
+                day = 1;
+                if(month == 11){
+                    year++;
+                    month = 0;
+                }else{
+                    month++;
+                }
+                mask = getEventDayMask(year, month);
+            }
+        }
+        return eventsByDay;
+    }
+
+    /**
+     * @return mask of the days having events, all the days if no mask provider is available
+     */
+    @Override
+    public int getEventDayMask(int year, int month) {
+        return eventDayMaskProvider == null ?
+                FlexibleCalendarView.ALL_DAYS_MASK : eventDayMaskProvider.getEventDayMask(year, month);
+    }
+
+    public FlexibleCalendarView.EventDataProvider getEventDataProvider(){
+        return eventDataProvider;
+    }
+}
@@ -0,0 +1,187 @@
+package com.p_v.flexiblecalendar;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseBooleanArray;
+import android.view.Choreographer;
+
+/**
+ * Collects the event changes pushed by an {@link FlexibleCalendarView.EventChangeSource}
+ * into a set of dirty days, flushed to the calendar once per frame. Intermediate changes
+ * of a day are never fetched, only the state of the day at the time of the flush is.
+ * The dirty days are invalidated in the event cache one by one and the month pages are
+ * reloaded once with the range covering all of them.
+ * Above a threshold the dirty days collapse into a single reload of all the events.
+ * <p>
+ * Changes can be pushed from any thread, the calendar is notified on the main thread.
+ *
+ * @author p-v
+ */
+class EventChangeCoalescer implements FlexibleCalendarView.EventChangeListener {
+
+    /**
+     * Number of dirty days after which all the events are reloaded
+     */
+    private static final int MAX_DIRTY_DAYS = 62;
+    private static final long FRAME_DELAY_MILLIS = 16;
+
+    private final FlexibleCalendarView calendarView;
+    private final Object lock = new Object();
+
+    /**
+     * Epoch days changed since the last flush, guarded by the lock
+     */
+    private SparseBooleanArray dirtyDays = new SparseBooleanArray();
+    private boolean allDirty;
+    private boolean scheduled;
+
+    /**
+     * Days being flushed, swapped with the dirty days on every flush
+     */
+    private SparseBooleanArray flushingDays = new SparseBooleanArray();
+    private final int[] startDate = new int[3];
+    private final int[] endDate = new int[3];
+
+    private Choreographer choreographer;
+    private Choreographer.FrameCallback frameCallback;
+    private Handler handler;
+    private Runnable flushRunnable;
+
+    /**
+     * Must be created on the main thread
+     */
+    EventChangeCoalescer(FlexibleCalendarView calendarView){
+        this.calendarView = calendarView;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            choreographer = Choreographer.getInstance();
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    flush();
+                }
+            };
+        }else{
+            handler = new Handler(Looper.getMainLooper());
+            flushRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            };
+        }
+    }
+
+    @Override
+    public void onEventsChanged(int year, int month, int day) {
+        int epochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+        synchronized (lock){
+            markDirtyLocked(epochDay, epochDay);
+            scheduleLocked();
+        }
+    }
+
+    @Override
+    public void onEventsChanged(int startYear, int startMonth, int startDay,
+                                int endYear, int endMonth, int endDay) {
+        int startEpochDay = FlexibleCalendarHelper.toEpochDay(startYear, startMonth, startDay);
+        int endEpochDay = FlexibleCalendarHelper.toEpochDay(endYear, endMonth, endDay);
+        synchronized (lock){
+            markDirtyLocked(startEpochDay, endEpochDay);
+            scheduleLocked();
+        }
+    }
+
+    @Override
+    public void onAllEventsChanged() {
+        synchronized (lock){
+            allDirty = true;
+            dirtyDays.clear();
+            scheduleLocked();
+        }
+    }
+
+    /**
+     * Drop the pending changes
+     */
+    void cancel(){
+        synchronized (lock){
+            if(scheduled){
+                if(choreographer != null){
+                    choreographer.removeFrameCallback(frameCallback);
+                }else{
+                    handler.removeCallbacks(flushRunnable);
+                }
+                scheduled = false;
+            }
+            allDirty = false;
+            dirtyDays.clear();
+        }
+    }
+
+    private void markDirtyLocked(int startEpochDay, int endEpochDay){
+        if(allDirty) return;
+        if(endEpochDay - startEpochDay >= MAX_DIRTY_DAYS){
+            allDirty = true;
+            dirtyDays.clear();
+            return;
+        }
+        for(int epochDay = startEpochDay; epochDay <= endEpochDay; epochDay++){
+            dirtyDays.put(epochDay, true);
+        }
+        if(dirtyDays.size() > MAX_DIRTY_DAYS){
+            allDirty = true;
+            dirtyDays.clear();
+        }
+    }
+
+    private void scheduleLocked(){
+        if(scheduled) return;
+        scheduled = true;
+        if(choreographer != null){
+            choreographer.postFrameCallback(frameCallback);
+        }else{
+            handler.postDelayed(flushRunnable, FRAME_DELAY_MILLIS);
+        }
+    }
+
+    private void flush(){
+        boolean reloadAll;
+        SparseBooleanArray days;
+        synchronized (lock){
+            if(!scheduled) return;
+            scheduled = false;
+            reloadAll = allDirty;
+            allDirty = false;
+            days = dirtyDays;
+            dirtyDays = flushingDays;
+            flushingDays = days;
+        }
+
+        if(reloadAll){
+            calendarView.notifyEventsChanged();
+        }else if(days.size() > 0){
+            //invalidate every run of consecutive days as a single range
+            int size = days.size();
+            int i = 0;
+            while(i < size){
+                int first = days.keyAt(i);
+                int last = first;
+                while(i + 1 < size && days.keyAt(i + 1) == last + 1){
+                    last = days.keyAt(++i);
+                }
+                i++;
+                FlexibleCalendarHelper.fromEpochDay(first, startDate);
+                FlexibleCalendarHelper.fromEpochDay(last, endDate);
+                calendarView.invalidateCachedEvents(startDate[0], startDate[1], startDate[2],
+                        endDate[0], endDate[1], endDate[2]);
+            }
+            //a single reload of the pages for all the runs
+            FlexibleCalendarHelper.fromEpochDay(days.keyAt(0), startDate);
+            FlexibleCalendarHelper.fromEpochDay(days.keyAt(size - 1), endDate);
+            calendarView.reloadMonthEvents(startDate[0], startDate[1], startDate[2],
+                    endDate[0], endDate[1], endDate[2]);
+        }
+        days.clear();
+    }
+}
@@ -0,0 +1,229 @@
+package com.p_v.flexiblecalendar;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times the calls made to the event data providers and reports the calls and the month
+ * pages exceeding their budget. Set with
+ * {@link FlexibleCalendarView#setEventProviderMonitor(EventProviderMonitor)}.
+ * <p>
+ * Every call is timed on its own, on the thread making it. The time of a page is the time
+ * spent fetching the events on the main thread for binding the cells of the month page.
+ * Rolling percentiles are kept for the last calls and pages.
+ *
+ * @author p-v
+ */
+public class EventProviderMonitor {
+
+    private static final String TAG = "FlexibleCalendar";
+
+    /**
+     * Number of latest samples the percentiles are computed from
+     */
+    private static final int SAMPLE_COUNT = 64;
+
+    /**
+     * Listener for the provider calls exceeding the budget. Called on the thread which called
+     * the provider, which is the loader thread for the events loaded asynchronously
+     */
+    public interface OnBudgetExceededListener {
+        /**
+         * Called when a single provider call exceeded the call budget
+         * @param year year
+         * @param month month
+         * @param day day, 0 if the call fetched the events of a range of days starting in the month
+         * @param durationMicros duration of the call
+         */
+        void onSlowCall(int year, int month, int day, long durationMicros);
+
+        /**
+         * Called when binding the cells of a month page spent more than the page budget in the providers.
+         * Called on the main thread
+         * @param year year of the page
+         * @param month month of the page
+         * @param durationMicros time spent in the providers
+         */
+        void onSlowPage(int year, int month, long durationMicros);
+    }
+
+    private final boolean debuggable;
+    private long callBudgetMicros = Long.MAX_VALUE;
+    private long pageBudgetMicros = Long.MAX_VALUE;
+    private boolean strictMode;
+    private OnBudgetExceededListener onBudgetExceededListener;
+
+    private final long[] callSamples = new long[SAMPLE_COUNT];
+    private final long[] pageSamples = new long[SAMPLE_COUNT];
+    private int callSampleCount;
+    private int pageSampleCount;
+    private int nextCallSample;
+    private int nextPageSample;
+
+    public EventProviderMonitor(Context context){
+        this.debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * @param callBudgetMicros budget of a single provider call in microseconds
+     */
+    public synchronized void setCallBudget(long callBudgetMicros){
+        this.callBudgetMicros = callBudgetMicros;
+    }
+
+    /**
+     * @param pageBudgetMicros budget of the provider calls for binding a month page in microseconds
+     */
+    public synchronized void setPageBudget(long pageBudgetMicros){
+        this.pageBudgetMicros = pageBudgetMicros;
+    }
+
+    /**
+     * Log the offending day and the stack of the calls exceeding the budget. Logging
+     * happens only in debuggable builds
+     */
+    public synchronized void setStrictMode(boolean strictMode){
+        this.strictMode = strictMode;
+    }
+
+    public synchronized void setOnBudgetExceededListener(OnBudgetExceededListener onBudgetExceededListener){
+        this.onBudgetExceededListener = onBudgetExceededListener;
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return duration of a provider call at the percentile in microseconds, 0 if nothing is timed yet
+     */
+    public synchronized long getCallPercentile(int percentile){
+        return getPercentile(callSamples, callSampleCount, percentile);
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return time spent in the providers for binding a page at the percentile in microseconds,
+     * 0 if nothing is timed yet
+     */
+    public synchronized long getPagePercentile(int percentile){
+        return getPercentile(pageSamples, pageSampleCount, percentile);
+    }
+
+    /**
+     * Discard the samples
+     */
+    public synchronized void reset(){
+        callSampleCount = 0;
+        pageSampleCount = 0;
+        nextCallSample = 0;
+        nextPageSample = 0;
+    }
+
+    /**
+     * @return provider timing each call made to the range provider
+     */
+    FlexibleCalendarView.EventRangeDataProvider timeCalls(
+            final FlexibleCalendarView.EventRangeDataProvider provider){
+        return new FlexibleCalendarView.EventRangeDataProvider() {
+            @Override
+            public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                    int endYear, int endMonth, int endDay) {
+                long start = System.nanoTime();
+                EventsByDay eventsByDay = provider.getEventsForTheRange(startYear, startMonth, startDay,
+                        endYear, endMonth, endDay);
+                boolean singleDay = startYear == endYear && startMonth == endMonth && startDay == endDay;
+                onCall(startYear, startMonth, singleDay ? startDay : 0, System.nanoTime() - start);
+                return eventsByDay;
+            }
+        };
+    }
+
+    /**
+     * @return provider timing each call made to the per day provider
+     */
+    FlexibleCalendarView.EventDataProvider timeCalls(final FlexibleCalendarView.EventDataProvider provider){
+        return new FlexibleCalendarView.EventDataProvider() {
+            @Override
+            public List<? extends Event> getEventsForTheDay(int year, int month, int day) {
+                long start = System.nanoTime();
+                List<? extends Event> events = provider.getEventsForTheDay(year, month, day);
+                onCall(year, month, day, System.nanoTime() - start);
+                return events;
+            }
+        };
+    }
+
+    /**
+     * @return provider timing each call made to the count provider
+     */
+    FlexibleCalendarView.EventCountDataProvider timeCalls(
+            final FlexibleCalendarView.EventCountDataProvider provider){
+        return new FlexibleCalendarView.EventCountDataProvider() {
+            @Override
+            public int getEventCountForTheDay(int year, int month, int day, int[] colors) {
+                long start = System.nanoTime();
+                int count = provider.getEventCountForTheDay(year, month, day, colors);
+                onCall(year, month, day, System.nanoTime() - start);
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Record a provider call, logging the stack of the calling thread if the call exceeded the budget
+     */
+    void onCall(int year, int month, int day, long durationNanos){
+        long durationMicros = durationNanos / 1000;
+        OnBudgetExceededListener listener;
+        boolean logStack;
+        synchronized (this){
+            callSamples[nextCallSample] = durationMicros;
+            nextCallSample = (nextCallSample + 1) % SAMPLE_COUNT;
+            callSampleCount = Math.min(callSampleCount + 1, SAMPLE_COUNT);
+            if(durationMicros <= callBudgetMicros) return;
+            listener = onBudgetExceededListener;
+            logStack = strictMode && debuggable;
+        }
+        if(logStack){
+            Log.w(TAG, "Event provider call for " + year + "-" + (month + 1) + "-" + day + " took "
+                    + durationMicros + "us", new Throwable("Slow event provider call"));
+        }
+        if(listener != null){
+            listener.onSlowCall(year, month, day, durationMicros);
+        }
+    }
+
+    void onPage(int year, int month, long durationNanos){
+        long durationMicros = durationNanos / 1000;
+        OnBudgetExceededListener listener;
+        boolean logStack;
+        synchronized (this){
+            pageSamples[nextPageSample] = durationMicros;
+            nextPageSample = (nextPageSample + 1) % SAMPLE_COUNT;
+            pageSampleCount = Math.min(pageSampleCount + 1, SAMPLE_COUNT);
+            if(durationMicros <= pageBudgetMicros) return;
+            listener = onBudgetExceededListener;
+            logStack = strictMode && debuggable;
+        }
+        if(logStack){
+            Log.w(TAG, "Event providers took " + durationMicros + "us for binding "
+                    + year + "-" + (month + 1), new Throwable("Slow month page"));
+        }
+        if(listener != null){
+            listener.onSlowPage(year, month, durationMicros);
+        }
+    }
+
+    private static long getPercentile(long[] samples, int sampleCount, int percentile){
+        if(sampleCount == 0) return 0;
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sampleCount) - 1;
+        return sorted[Math.max(0, Math.min(sampleCount - 1, index))];
+    }
+}
@@ -1,19 +1,27 @@
 package com.p_v.flexiblecalendar;
 
 import android.content.Context;
+import android.support.v7.widget.RecyclerView;
 import android.util.MonthDisplayHelper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
 import android.widget.BaseAdapter;
 
-import com.p_v.flexiblecalendar.entity.SelectedDateItem;
+import com.p_v.flexiblecalendar.entity.EventCountsByDay;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+import com.p_v.flexiblecalendar.entity.MonthCellStates;
+import com.p_v.flexiblecalendar.entity.PackedDate;
 import com.p_v.flexiblecalendar.view.BaseCellView;
 import com.p_v.flexiblecalendar.entity.Event;
 import com.p_v.flexiblecalendar.view.IDateCellViewDrawer;
+import com.p_v.flexiblecalendar.view.IEventCountCellView;
 import com.p_v.fliexiblecalendar.R;
 
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -26,16 +34,98 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
     private Context context;
     private MonthDisplayHelper monthDisplayHelper;
     private Calendar calendar;
+    /**
+     * Today packed with {@link PackedDate}, read from the calendar when the adapter is initialized
+     */
+    private int today;
     private OnDateCellItemClickListener onDateCellItemClickListener;
-    private SelectedDateItem selectedItem;
-    private SelectedDateItem userSelectedDateItem;
+    /**
+     * Selected date and date selected by the user packed with {@link PackedDate}, {@link PackedDate#NONE} for none
+     */
+    private int selectedDate;
+    private int userSelectedDate;
     private MonthEventFetcher monthEventFetcher;
     private IDateCellViewDrawer cellViewDrawer;
     private boolean showDatesOutsideMonth;
 	private boolean decorateDatesOutsideMonth;
     private boolean disableAutoDateSelection;
 
-    private static final int SIX_WEEK_DAY_COUNT = 42;
+    /**
+     * Events for all the visible dates of the month fetched in a single call
+     */
+    private EventsByDay monthEvents;
+    /**
+     * Event counts of the visible dates, for the cells displaying only the event count
+     */
+    private EventCountsByDay monthEventCounts;
+
+    /**
+     * Parts of the page events, see {@link PageEvents}, the cells of the page asked for.
+     * Kept when the adapter moves to another month
+     */
+    private int requestedParts;
+    /**
+     * Parts of the page events loaded or being loaded for the month
+     */
+    private int loadedParts;
+    /**
+     * Parts of the page events available for decorating the cells, possibly being loaded again
+     */
+    private int availableParts;
+    /**
+     * Number of colors displayed by the cells displaying the event count
+     */
+    private int eventCountColors;
+
+    /**
+     * Loader for fetching the events off the main thread, null for loading synchronously
+     */
+    private MonthEventLoader monthEventLoader;
+    private MonthEventLoader.LoadRequest pendingLoadRequest;
+    private ViewGroup gridView;
+
+    /**
+     * Listener notified when the displayed cells change, null if there is none
+     */
+    private OnCellsChangedListener onCellsChangedListener;
+
+    /**
+     * Monitor timing the provider calls, null if the calls are not timed
+     */
+    private EventProviderMonitor eventProviderMonitor;
+    /**
+     * Time spent in the providers on the main thread since the page was last bound
+     */
+    private long pageProviderNanos;
+    /**
+     * Positions of the cells bound since the page was last bound, bit 0 for the first position
+     */
+    private long boundCells;
+
+    /**
+     * Colors of the first events of a day, reused for decorating the cells displaying the event count
+     */
+    private int[] eventColors = new int[0];
+
+    /**
+     * Buffer for the dates computed while binding the cells
+     */
+    private final int[] scratchDate = new int[3];
+
+    private final DateClickListener dateClickListener = new DateClickListener();
+
+    private static final int SIX_WEEK_DAY_COUNT = MonthCellStates.CELL_COUNT;
+
+    /**
+     * States of the cells, valid until the month or the selection changes
+     */
+    private final MonthCellStates cellStates = new MonthCellStates();
+    private boolean cellStatesValid;
+
+    /**
+     * Maximum number of months the month display helper is stepped by when initialized with another month
+     */
+    private static final int MAX_MONTH_STEPS = 12;
 
 
 	public FlexibleCalendarGridAdapter(Context context, int year, int month,
@@ -49,10 +139,456 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
     }
 
     public void initialize(int year, int month, int startDayOfTheWeek){
+        int monthDifference = (year - this.year) * 12 + month - this.month;
+        if(monthDisplayHelper != null && monthDisplayHelper.getWeekStartDay() == startDayOfTheWeek
+                && Math.abs(monthDifference) <= MAX_MONTH_STEPS){
+            //step the helper to the month instead of creating a new one
+            for(; monthDifference > 0; monthDifference--){
+                monthDisplayHelper.nextMonth();
+            }
+            for(; monthDifference < 0; monthDifference++){
+                monthDisplayHelper.previousMonth();
+            }
+        }else{
+            this.monthDisplayHelper = new MonthDisplayHelper(year,month,startDayOfTheWeek);
+        }
         this.year = year;
         this.month = month;
-        this.monthDisplayHelper = new MonthDisplayHelper(year,month,startDayOfTheWeek);
-        this.calendar = FlexibleCalendarHelper.getLocalizedCalendar(context);
+        today = computeToday();
+        cellStatesValid = false;
+        boundCells = 0;
+        invalidateMonthEvents();
+    }
+
+    /**
+     * Update the current date after midnight or a change of the clock, redrawing the cells if it changed
+     */
+    void refreshToday(){
+        int newToday = computeToday();
+        if(newToday != today){
+            today = newToday;
+            cellStatesValid = false;
+            notifyDataSetChanged();
+        }
+    }
+
+    private int computeToday(){
+        if(calendar == null){
+            this.calendar = FlexibleCalendarHelper.getLocalizedCalendar(context);
+        }else{
+            //today may have changed since the last computation
+            calendar.setTimeInMillis(System.currentTimeMillis());
+        }
+        return PackedDate.of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Fetch the events for all the dates displayed in the month in a single call
+     */
+    void loadMonthEvents(){
+        invalidateMonthEvents();
+        if(monthEventFetcher != null){
+            //the events are loaded until the cells of the page ask for the event counts only
+            loadPageEvents(requestedParts == 0 ? PageEvents.EVENTS : requestedParts);
+        }
+    }
+
+    /**
+     * Load the parts of the page events, keeping the other loaded parts
+     * @param parts {@link PageEvents#EVENTS} and {@link PageEvents#COUNTS} flags
+     */
+    private void loadPageEvents(int parts){
+        if(pendingLoadRequest != null){
+            //fetch the pending parts along with the new ones
+            parts |= pendingLoadRequest.getParts();
+            cancelPendingLoad();
+        }
+        loadedParts |= parts;
+        int[] range = new int[6];
+        getEventRange(range);
+        PageEvents cachedEvents = monthEventLoader == null ? null : getCachedPageEvents(range, parts);
+        if(cachedEvents != null){
+            //cached events are displayed right away without going through the loader
+            setPageEvents(parts, cachedEvents);
+        }else if(monthEventLoader != null){
+            if((availableParts & PageEvents.EVENTS) == 0){
+                //render the cells with the snapshot events, if any, and decorate them again once the events arrive
+                monthEvents = monthEventFetcher.getSnapshotEventsForTheRange(range[0], range[1],
+                        range[2], range[3], range[4], range[5]);
+            }
+            final int loadParts = parts;
+            pendingLoadRequest = monthEventLoader.load(monthEventFetcher, range, parts, eventCountColors,
+                    new MonthEventLoader.Callback() {
+                @Override
+                public void onEventsLoaded(PageEvents pageEvents) {
+                    pendingLoadRequest = null;
+                    updatePageEvents(loadParts, pageEvents);
+                }
+            });
+        }else{
+            setPageEvents(parts, fetchPageEvents(range, parts));
+        }
+    }
+
+    /**
+     * Ask for a part of the page events while binding a cell, loading it if it is not loaded for the month
+     */
+    private void requestPageEvents(int part){
+        requestedParts |= part;
+        if((loadedParts & part) == 0){
+            loadPageEvents(part);
+        }
+    }
+
+    /**
+     * @return the parts of the page events if they are all cached, null otherwise
+     */
+    private PageEvents getCachedPageEvents(int[] range, int parts){
+        PageEvents cachedEvents = new PageEvents();
+        if((parts & PageEvents.EVENTS) != 0){
+            cachedEvents.events = monthEventFetcher.getCachedEventsForTheRange(
+                    range[0], range[1], range[2], range[3], range[4], range[5]);
+            if(cachedEvents.events == null) return null;
+        }
+        if((parts & PageEvents.COUNTS) != 0){
+            cachedEvents.counts = monthEventFetcher.getCachedEventCountsForTheRange(eventCountColors,
+                    range[0], range[1], range[2], range[3], range[4], range[5]);
+            if(cachedEvents.counts == null) return null;
+        }
+        return cachedEvents;
+    }
+
+    /**
+     * Fetch the page events on the main thread, adding the time of the fetch to the time of the page.
+     * The provider calls are timed one by one by the providers set up by the calendar view
+     */
+    private PageEvents fetchPageEvents(int[] range, int parts){
+        long start = eventProviderMonitor == null ? 0 : System.nanoTime();
+        PageEvents pageEvents = PageEvents.fetch(monthEventFetcher, range, parts, eventCountColors);
+        if(eventProviderMonitor != null){
+            pageProviderNanos += System.nanoTime() - start;
+        }
+        return pageEvents;
+    }
+
+    /**
+     * Discard the fetched events, the events will be fetched again on next bind
+     */
+    void invalidateMonthEvents(){
+        cancelPendingLoad();
+        monthEvents = null;
+        monthEventCounts = null;
+        loadedParts = 0;
+        availableParts = 0;
+    }
+
+    private void cancelPendingLoad(){
+        if(pendingLoadRequest != null){
+            pendingLoadRequest.cancel();
+            pendingLoadRequest = null;
+        }
+    }
+
+    /**
+     * Fetch the events of the month again keeping the current events displayed
+     * until the new events are available. Only the cells whose events changed are decorated again
+     */
+    void reloadMonthEvents(){
+        if(loadedParts == 0 || monthEventFetcher == null){
+            loadMonthEvents();
+            return;
+        }
+        cancelPendingLoad();
+        final int parts = loadedParts;
+        int[] range = new int[6];
+        getEventRange(range);
+        if(monthEventLoader != null){
+            pendingLoadRequest = monthEventLoader.load(monthEventFetcher, range, parts, eventCountColors,
+                    new MonthEventLoader.Callback() {
+                @Override
+                public void onEventsLoaded(PageEvents pageEvents) {
+                    pendingLoadRequest = null;
+                    updatePageEvents(parts, pageEvents);
+                }
+            });
+        }else{
+            updatePageEvents(parts, fetchPageEvents(range, parts));
+        }
+    }
+
+    /**
+     * Fetch the events of the days between the start and end day key again and decorate only
+     * the cells whose events changed. Nothing is fetched if the month does not display any of the days
+     *
+     * @param startDayKey key of the first changed day, see {@link EventsByDay#getDayKey(int, int, int)}
+     * @param endDayKey key of the last changed day
+     * @return true if the month displays any of the days
+     */
+    boolean reloadMonthEvents(int startDayKey, int endDayKey){
+        int[] range = new int[6];
+        getEventRange(range);
+        final int fromKey = Math.max(startDayKey, EventsByDay.getDayKey(range[0], range[1], range[2]));
+        final int toKey = Math.min(endDayKey, EventsByDay.getDayKey(range[3], range[4], range[5]));
+        if(fromKey > toKey) return false;
+
+        if(loadedParts == 0 || monthEventFetcher == null || pendingLoadRequest != null){
+            // the loaded events are not complete yet, fetch the whole month
+            reloadMonthEvents();
+            return true;
+        }
+
+        final int parts = loadedParts;
+        range[0] = EventsByDay.getYear(fromKey);
+        range[1] = EventsByDay.getMonth(fromKey);
+        range[2] = EventsByDay.getDay(fromKey);
+        range[3] = EventsByDay.getYear(toKey);
+        range[4] = EventsByDay.getMonth(toKey);
+        range[5] = EventsByDay.getDay(toKey);
+        if(monthEventLoader != null){
+            pendingLoadRequest = monthEventLoader.load(monthEventFetcher, range, parts, eventCountColors,
+                    new MonthEventLoader.Callback() {
+                @Override
+                public void onEventsLoaded(PageEvents pageEvents) {
+                    pendingLoadRequest = null;
+                    patchPageEvents(parts, fromKey, toKey, pageEvents);
+                }
+            });
+        }else{
+            patchPageEvents(parts, fromKey, toKey, fetchPageEvents(range, parts));
+        }
+        return true;
+    }
+
+    /**
+     * Replace the events and counts of the days between the keys with the fetched ones.
+     * The current events and counts are copied as they can be shared with a cache
+     */
+    private void patchPageEvents(int parts, int fromKey, int toKey, PageEvents rangeEvents){
+        PageEvents patchedEvents = new PageEvents();
+        if((parts & PageEvents.EVENTS) != 0){
+            patchedEvents.events = monthEvents == null ? new EventsByDay() : new EventsByDay(monthEvents);
+            patchedEvents.events.removeRange(fromKey, toKey);
+            if(rangeEvents.events != null){
+                for(int i = 0; i < rangeEvents.events.size(); i++){
+                    int key = rangeEvents.events.keyAt(i);
+                    if(key >= fromKey && key <= toKey){
+                        patchedEvents.events.put(key, rangeEvents.events.valueAt(i));
+                    }
+                }
+            }
+        }
+        if((parts & PageEvents.COUNTS) != 0){
+            patchedEvents.counts = monthEventCounts == null ?
+                    new EventCountsByDay(eventCountColors) : new EventCountsByDay(monthEventCounts);
+            patchedEvents.counts.removeRange(fromKey, toKey);
+            if(rangeEvents.counts != null){
+                patchedEvents.counts.putRange(rangeEvents.counts, fromKey, toKey);
+            }
+        }
+        updatePageEvents(parts, patchedEvents);
+    }
+
+    private void setPageEvents(int parts, PageEvents pageEvents){
+        if((parts & PageEvents.EVENTS) != 0){
+            monthEvents = pageEvents.events;
+        }
+        if((parts & PageEvents.COUNTS) != 0){
+            monthEventCounts = pageEvents.counts;
+        }
+        availableParts |= parts;
+    }
+
+    /**
+     * Set the loaded parts of the page events and decorate, in a single pass, only the displayed
+     * cells whose events or event counts changed
+     * @param parts parts of the page events which were loaded
+     * @param pageEvents loaded events and counts
+     */
+    private void updatePageEvents(int parts, PageEvents pageEvents){
+        EventsByDay previousEvents = monthEvents;
+        EventCountsByDay previousCounts = monthEventCounts;
+        boolean previousCountsAvailable = (availableParts & PageEvents.COUNTS) != 0;
+        setPageEvents(parts, pageEvents);
+        if(gridView == null){
+            // canvas rendered pages redraw all the cells
+            notifyDataSetChanged();
+            return;
+        }
+
+        boolean countsAvailable = (availableParts & PageEvents.COUNTS) != 0;
+        int[] date = new int[3];
+        boolean cellsChanged = false;
+        for(int i = 0, count = gridView.getChildCount(); i < count; i++){
+            View child = gridView.getChildAt(i);
+            int position = getChildPosition(i, child);
+            if(gridView instanceof RecyclerView){
+                //the cells of the recycler pages are held by frames
+                child = MonthCellAdapter.getCellView(child);
+            }
+            if(!(child instanceof BaseCellView) || !getEventDateAtPosition(position, date)){
+                continue;
+            }
+            if(child instanceof IEventCountCellView && countsAvailable){
+                int dayKey = EventsByDay.getDayKey(date[0], date[1], date[2]);
+                if(previousCountsAvailable && EventCountsByDay.isSameDay(previousCounts, monthEventCounts, dayKey)){
+                    continue;
+                }
+                decorateWithEventCount((IEventCountCellView) child, dayKey);
+            }else{
+                List<? extends Event> oldDayEvents = previousEvents == null ?
+                        null : previousEvents.get(date[0], date[1], date[2]);
+                List<? extends Event> dayEvents = monthEvents == null ? null : monthEvents.get(date[0], date[1], date[2]);
+                if(isSameEvents(oldDayEvents, dayEvents)){
+                    continue;
+                }
+                if(child instanceof IEventCountCellView){
+                    decorateWithEventCount((IEventCountCellView) child, dayEvents);
+                }else{
+                    ((BaseCellView) child).setEvents(dayEvents == null ? Collections.<Event>emptyList() : dayEvents);
+                }
+            }
+            cellsChanged = true;
+        }
+        if(cellsChanged){
+            onCellsChanged();
+        }
+    }
+
+    /**
+     * @return position of the displayed cell, -1 if the cell is not bound to a position
+     */
+    private int getChildPosition(int index, View child){
+        if(gridView instanceof AdapterView){
+            return ((AdapterView<?>) gridView).getFirstVisiblePosition() + index;
+        }
+        return ((RecyclerView) gridView).getChildAdapterPosition(child);
+    }
+
+    /**
+     * Decorate the cell with the events of the day. Cells displaying only the event count
+     * are decorated from the event counts loaded for the page when the counts are provided
+     */
+    private void decorateCell(BaseCellView cellView, int year, int month, int day){
+        if(cellView instanceof IEventCountCellView){
+            IEventCountCellView countCellView = (IEventCountCellView) cellView;
+            if(monthEventFetcher.hasEventCounts()){
+                eventCountColors = Math.max(eventCountColors, countCellView.getMaxEventColors());
+                requestPageEvents(PageEvents.COUNTS);
+                if((availableParts & PageEvents.COUNTS) != 0){
+                    decorateWithEventCount(countCellView, EventsByDay.getDayKey(year, month, day));
+                }else{
+                    //the counts are loading, count the snapshot events meanwhile
+                    decorateWithEventCount(countCellView, monthEvents == null ? null : monthEvents.get(year, month, day));
+                }
+            }else{
+                decorateWithEventCount(countCellView, getEventsForTheDay(year, month, day));
+            }
+        }else{
+            cellView.setEvents(getEventsForTheDay(year, month, day));
+        }
+    }
+
+    /**
+     * Decorate the cell from the loaded event counts
+     */
+    private void decorateWithEventCount(IEventCountCellView cellView, int dayKey){
+        int[] colors = getEventColors(cellView.getMaxEventColors());
+        int count;
+        if(monthEventCounts == null){
+            Arrays.fill(colors, 0);
+            count = 0;
+        }else{
+            count = monthEventCounts.getColors(dayKey, colors);
+        }
+        cellView.setEventCount(count, colors);
+    }
+
+    private void decorateWithEventCount(IEventCountCellView cellView, List<? extends Event> events){
+        int[] colors = getEventColors(cellView.getMaxEventColors());
+        int count = events == null ? 0 : events.size();
+        for(int i = 0, n = Math.min(count, colors.length); i < n; i++){
+            colors[i] = events.get(i).getColor();
+        }
+        cellView.setEventCount(count, colors);
+    }
+
+    private int[] getEventColors(int maxColors){
+        if(eventColors.length != maxColors){
+            eventColors = new int[maxColors];
+        }
+        return eventColors;
+    }
+
+    private static boolean isSameEvents(List<? extends Event> first, List<? extends Event> second){
+        if(first == second) return true;
+        int size = first == null ? 0 : first.size();
+        if(size != (second == null ? 0 : second.size())) return false;
+        for(int i = 0; i < size; i++){
+            if(first.get(i) != second.get(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the date for the cell at the position if the cell displays events
+     * @param position cell position
+     * @param date array of size 3 for holding year, month and day
+     * @return false if the cell does not display events
+     */
+    private boolean getEventDateAtPosition(int position, int[] date){
+        if(position < 0 || position >= getCount()) return false;
+        int row = position/7;
+        int col = position%7;
+        int day = monthDisplayHelper.getDayAt(row, col);
+        if(monthDisplayHelper.isWithinCurrentMonth(row, col)){
+            date[0] = year;
+            date[1] = month;
+        }else if(showDatesOutsideMonth && decorateDatesOutsideMonth){
+            getOutsideMonth(day, date);
+        }else{
+            return false;
+        }
+        date[2] = day;
+        return true;
+    }
+
+    /**
+     * Compute the range of dates for which events are displayed in the month
+     * @param range array of size 6 for holding start year, month, day and end year, month, day
+     */
+    private void getEventRange(int[] range){
+        if(showDatesOutsideMonth && decorateDatesOutsideMonth){
+            //first and last cell of the six week grid
+            if(monthDisplayHelper.isWithinCurrentMonth(0, 0)){
+                range[0] = year;
+                range[1] = month;
+            }else{
+                FlexibleCalendarHelper.previousMonth(year, month, range);
+            }
+            range[2] = monthDisplayHelper.getDayAt(0, 0);
+
+            int[] temp = new int[2];
+            if(monthDisplayHelper.isWithinCurrentMonth(5, 6)){
+                temp[0] = year;
+                temp[1] = month;
+            }else{
+                FlexibleCalendarHelper.nextMonth(year, month, temp);
+            }
+            range[3] = temp[0];
+            range[4] = temp[1];
+            range[5] = monthDisplayHelper.getDayAt(5, 6);
+        }else{
+            range[0] = range[3] = year;
+            range[1] = range[4] = month;
+            range[2] = 1;
+            range[5] = monthDisplayHelper.getNumberOfDaysInMonth();
+        }
+    }
+
+    private List<? extends Event> getEventsForTheDay(int year, int month, int day){
+        requestPageEvents(PageEvents.EVENTS);
+        return monthEvents == null ? null : monthEvents.get(year, month, day);
     }
 
     @Override
@@ -80,47 +616,20 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        int row = position/7;
-        int col = position%7;
+    public boolean areAllItemsEnabled() {
+        return showDatesOutsideMonth;
+    }
 
-        //checking if is within current month
-        boolean isWithinCurrentMonth = monthDisplayHelper.isWithinCurrentMonth(row,col);
-
-        //compute cell type
-        int cellType = BaseCellView.OUTSIDE_MONTH;
-        //day at the current row and col
-        int day = monthDisplayHelper.getDayAt(row,col);
-        if(isWithinCurrentMonth){
-            //set to REGULAR if is within current month
-            cellType = BaseCellView.REGULAR;
-            if(disableAutoDateSelection){
-                if(userSelectedDateItem != null && userSelectedDateItem.getYear()==year
-                        && userSelectedDateItem.getMonth()==month
-                        && userSelectedDateItem.getDay() ==day){
-                    //selected
-                    cellType = BaseCellView.SELECTED;
-                }
-            }else{
-                if(selectedItem!= null && selectedItem.getYear()==year
-                        && selectedItem.getMonth()==month
-                        && selectedItem.getDay() ==day){
-                    //selected
-                    cellType = BaseCellView.SELECTED;
-                }
-            }
-            if(calendar.get(Calendar.YEAR)==year
-                    && calendar.get(Calendar.MONTH) == month
-                    && calendar.get(Calendar.DAY_OF_MONTH) == day){
-                if(cellType == BaseCellView.SELECTED){
-                    //today and selected
-                    cellType = BaseCellView.SELECTED_TODAY;
-                }else{
-                    //today
-                    cellType = BaseCellView.TODAY;
-                }
-            }
-        }
+    @Override
+    public boolean isEnabled(int position) {
+        // empty cells outside the month are not clickable
+        return isCellVisible(position);
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        int cellType = getCellType(position);
+        int day = getDayAtPosition(position);
 
         BaseCellView cellView = cellViewDrawer.getCellView(position, convertView, parent, cellType);
         if(cellView==null){
@@ -131,17 +640,141 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
             }
         }
         drawDateCell(cellView, day, cellType);
+        //the cells are not always bound in order nor only once, the page is bound once every cell is
+        boundCells |= 1L << position;
+        long pageCells = (1L << getCount()) - 1;
+        if((boundCells & pageCells) == pageCells){
+            onPageBound();
+        }
         return cellView;
     }
 
+    /**
+     * Create an unbound cell view for the recycler pages, the cell is bound with
+     * {@link #getView(int, View, ViewGroup)} passing it as the convert view
+     * @param parent parent of the cell
+     * @param cellType type of the cells the view is bound to
+     */
+    BaseCellView createCellView(ViewGroup parent, @BaseCellView.CellType int cellType){
+        BaseCellView cellView = cellViewDrawer.getCellView(0, null, parent, cellType);
+        if(cellView == null){
+            LayoutInflater inflater = LayoutInflater.from(context);
+            cellView = (BaseCellView)inflater.inflate(R.layout.square_cell_layout,null);
+        }
+        return cellView;
+    }
+
+    /**
+     * Report the time spent in the providers for binding the cells of the page
+     */
+    void onPageBound(){
+        boundCells = 0;
+        if(eventProviderMonitor != null && pageProviderNanos > 0){
+            eventProviderMonitor.onPage(year, month, pageProviderNanos);
+            pageProviderNanos = 0;
+        }
+    }
+
+    int getDayAtPosition(int position){
+        return getMonthCellStates().getDay(position);
+    }
+
+    /**
+     * @return false if the cell at the position is an empty cell outside the month
+     */
+    boolean isCellVisible(int position){
+        return showDatesOutsideMonth || getMonthCellStates().isWithinMonth(position);
+    }
+
+    /**
+     * Load the events of the page unless they are loaded, for the pages drawing the cells
+     * without binding cell views. Called when the page is bound or its data changes
+     */
+    void bindPageEvents(){
+        if(monthEventFetcher != null){
+            requestPageEvents(PageEvents.EVENTS);
+        }
+        //the page draws all its cells at once, so binding the page events binds every cell
+        onPageBound();
+    }
+
+    /**
+     * Get the loaded events of the cell at the position, the events are never loaded
+     * so that drawing the page does not call the providers, see {@link #bindPageEvents()}
+     * @param position cell position
+     * @param date array of size 3 for holding year, month and day
+     * @return events of the day, null if the cell does not display events or the events are not loaded
+     */
+    List<? extends Event> getEventsAtPosition(int position, int[] date){
+        if(monthEvents == null || !getEventDateAtPosition(position, date)){
+            return null;
+        }
+        return monthEvents.get(date[0], date[1], date[2]);
+    }
+
+    @BaseCellView.CellType
+    int getCellType(int position){
+        return getMonthCellStates().getCellType(position);
+    }
+
+    /**
+     * @return cell types and days of the month, computed again if the month or the selection changed
+     */
+    MonthCellStates getMonthCellStates(){
+        if(!cellStatesValid){
+            int monthDate = PackedDate.of(year, month, 1);
+            int selected = disableAutoDateSelection ? userSelectedDate : selectedDate;
+            int selectedDay = PackedDate.isSameMonth(selected, monthDate) ? PackedDate.getDay(selected) : 0;
+            int todayDay = PackedDate.isSameMonth(today, monthDate) ? PackedDate.getDay(today) : 0;
+            cellStates.update(monthDisplayHelper, todayDay, selectedDay);
+            cellStatesValid = true;
+        }
+        return cellStates;
+    }
+
+    /**
+     * @return date of the cell at the position packed with {@link PackedDate}
+     */
+    int getPackedDateAtPosition(int position){
+        int row = position / 7;
+        int col = position % 7;
+        int day = monthDisplayHelper.getDayAt(row, col);
+        if(monthDisplayHelper.isWithinCurrentMonth(row, col)){
+            return PackedDate.of(year, month, day);
+        }
+        getOutsideMonth(day, scratchDate);
+        return PackedDate.of(scratchDate[0], scratchDate[1], day);
+    }
+
+    /**
+     * Select the date of the cell at the position
+     */
+    void performDateClick(int position){
+        if(!isCellVisible(position)) return;
+        selectDate(getPackedDateAtPosition(position));
+    }
+
+    private void selectDate(int packedDate){
+        selectedDate = packedDate;
+
+        if(disableAutoDateSelection){
+            userSelectedDate = packedDate;
+        }
+
+        notifyDataSetChanged();
+
+        if(onDateCellItemClickListener !=null){
+            onDateCellItemClickListener.onDateClick(packedDate);
+        }
+    }
+
     private void drawDateCell(BaseCellView cellView,int day, int cellType){
         cellView.clearAllStates();
         if(cellType != BaseCellView.OUTSIDE_MONTH) {
-            cellView.setText(String.valueOf(day));
-            cellView.setOnClickListener(new DateClickListener(day, month, year));
+            setDayText(cellView, FlexibleCalendarHelper.getDayText(day));
             // add events
             if(monthEventFetcher!=null){
-                cellView.setEvents(monthEventFetcher.getEventsForTheDay(year, month, day));
+                decorateCell(cellView, year, month, day);
             }
             switch (cellType){
                 case BaseCellView.SELECTED_TODAY:
@@ -159,31 +792,46 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
             }
         }else{
             if(showDatesOutsideMonth){
-                cellView.setText(String.valueOf(day));
-                int[] temp = new int[2];
-                //date outside month and less than equal to 12 means it belongs to next month otherwise previous
-                if(day<=12){
-                    FlexibleCalendarHelper.nextMonth(year,month,temp);
-                    cellView.setOnClickListener(new DateClickListener(day, temp[1], temp[0]));
-                }else{
-                    FlexibleCalendarHelper.previousMonth(year, month, temp);
-                    cellView.setOnClickListener(new DateClickListener(day, temp[1], temp[0]));
-                }
+                setDayText(cellView, FlexibleCalendarHelper.getDayText(day));
 
 				if(decorateDatesOutsideMonth && monthEventFetcher!=null){
-					cellView.setEvents(monthEventFetcher.getEventsForTheDay(temp[0], temp[1], day));
+                    getOutsideMonth(day, scratchDate);
+					decorateCell(cellView, scratchDate[0], scratchDate[1], day);
 				}
 
 				cellView.addState(BaseCellView.STATE_OUTSIDE_MONTH);
             } else{
                 cellView.setBackgroundResource(android.R.color.transparent);
-                cellView.setText(null);
-                cellView.setOnClickListener(null);
+                setDayText(cellView, null);
             }
         }
         cellView.refreshDrawableState();
     }
 
+    /**
+     * Set the text only if the cell is not already displaying it, the day texts are shared
+     * so a rebind of the same day does not lay out the text again
+     */
+    private static void setDayText(BaseCellView cellView, String dayText){
+        if(cellView.getText() != dayText){
+            cellView.setText(dayText);
+        }
+    }
+
+    /**
+     * Get the month of a day displayed outside the month
+     * @param day day displayed outside the month
+     * @param date array of size 2 for holding the year and the month
+     */
+    private void getOutsideMonth(int day, int[] date){
+        //date outside month and less than equal to 12 means it belongs to next month otherwise previous
+        if(day<=12){
+            FlexibleCalendarHelper.nextMonth(year, month, date);
+        }else{
+            FlexibleCalendarHelper.previousMonth(year, month, date);
+        }
+    }
+
     public int getYear(){
         return year;
     }
@@ -192,61 +840,179 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
         return month;
     }
 
-    private class DateClickListener implements View.OnClickListener{
+    /**
+     * Single click listener of the grid resolving the clicked date from the position
+     */
+    private class DateClickListener implements AdapterView.OnItemClickListener{
+        @Override
+        public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            performDateClick(position);
+        }
+    }
 
-        private int iDay;
-        private int iMonth;
-        private int iYear;
+    /**
+     * Listener for the changes of the displayed cells, either rebound or decorated again
+     */
+    interface OnCellsChangedListener {
+        void onCellsChanged();
+    }
 
-        public DateClickListener(int day, int month, int year){
-            this.iDay = day;
-            this.iMonth = month;
-            this.iYear = year;
-        }
+    public interface OnDateCellItemClickListener {
+        /**
+         * @param packedDate clicked date packed with {@link PackedDate}
+         */
+        void onDateClick(int packedDate);
+    }
 
-        @Override
-        public void onClick(final View v) {
-            selectedItem = new SelectedDateItem(iYear,iMonth,iDay);
+    interface MonthEventFetcher {
+        List<? extends Event> getEventsForTheDay(int year,int month,int day);
 
-            if(disableAutoDateSelection){
-                userSelectedDateItem = selectedItem;
-            }
+        EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                         int endYear, int endMonth, int endDay);
 
-            notifyDataSetChanged();
+        /**
+         * @return true if the event counts are provided for the cells displaying only the event count
+         */
+        boolean hasEventCounts();
 
-            if(onDateCellItemClickListener !=null){
-                onDateCellItemClickListener.onDateClick(selectedItem);
-            }
+        /**
+         * @param maxColors number of colors kept for every day
+         * @return event counts of the range, null if the event counts are not provided
+         */
+        EventCountsByDay getEventCountsForTheRange(int maxColors, int startYear, int startMonth, int startDay,
+                                                   int endYear, int endMonth, int endDay);
+
+        /**
+         * @return mask of the days of the month having events, see
+         * {@link FlexibleCalendarView.EventDayMaskProvider#getEventDayMask(int, int)}.
+         * Read once per page by the load job, off the main thread if the events are loaded asynchronously
+         */
+        int getEventDayMask(int year, int month);
 
+        /**
+         * @return events of the range available without calling the provider, null if they are not available
+         */
+        EventsByDay getCachedEventsForTheRange(int startYear, int startMonth, int startDay,
+                                               int endYear, int endMonth, int endDay);
+
+        /**
+         * @return event counts of the range available without calling the provider, null if they are not available
+         */
+        EventCountsByDay getCachedEventCountsForTheRange(int maxColors, int startYear, int startMonth, int startDay,
+                                                         int endYear, int endMonth, int endDay);
+
+        /**
+         * @return events displayed until the events of the range are loaded, null if there are none
+         */
+        EventsByDay getSnapshotEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                 int endYear, int endMonth, int endDay);
+    }
+
+    void setOnCellsChangedListener(OnCellsChangedListener onCellsChangedListener){
+        this.onCellsChangedListener = onCellsChangedListener;
+    }
+
+    void removeOnCellsChangedListener(OnCellsChangedListener onCellsChangedListener){
+        if(this.onCellsChangedListener == onCellsChangedListener){
+            this.onCellsChangedListener = null;
         }
     }
 
-    public interface OnDateCellItemClickListener {
-        void onDateClick(SelectedDateItem selectedItem);
+    private void onCellsChanged(){
+        if(onCellsChangedListener != null){
+            onCellsChangedListener.onCellsChanged();
+        }
     }
 
-    interface MonthEventFetcher {
-        List<? extends Event> getEventsForTheDay(int year,int month,int day);
+    @Override
+    public void notifyDataSetChanged() {
+        //the selection or the flags may have changed
+        cellStatesValid = false;
+        super.notifyDataSetChanged();
+        onCellsChanged();
+    }
+
+    @Override
+    public void notifyDataSetInvalidated() {
+        cellStatesValid = false;
+        super.notifyDataSetInvalidated();
+        onCellsChanged();
+    }
+
+    /**
+     * @return true if the events of the page are loaded and no load is pending
+     */
+    boolean isPageBound(){
+        return (monthEventFetcher == null || loadedParts != 0) && pendingLoadRequest == null;
+    }
+
+    /**
+     * @return click listener of the grid selecting the clicked date
+     */
+    AdapterView.OnItemClickListener getDateClickListener(){
+        return dateClickListener;
     }
 
     public void setOnDateClickListener(OnDateCellItemClickListener onDateCellItemClickListener){
         this.onDateCellItemClickListener = onDateCellItemClickListener;
     }
 
-    public void setSelectedItem(SelectedDateItem selectedItem, boolean notify, boolean isUserSelected){
-        this.selectedItem = selectedItem;
+    /**
+     * @param packedDate selected date packed with {@link PackedDate}, {@link PackedDate#NONE} for none
+     * @param notify true for redrawing the cells
+     * @param isUserSelected true if the user selected the date
+     */
+    public void setSelectedDate(int packedDate, boolean notify, boolean isUserSelected){
+        this.selectedDate = packedDate;
+        cellStatesValid = false;
         if(disableAutoDateSelection && isUserSelected){
-            this.userSelectedDateItem = selectedItem;
+            this.userSelectedDate = packedDate;
         }
         if(notify) notifyDataSetChanged();
     }
 
-    public SelectedDateItem getSelectedItem(){
-        return selectedItem;
+    /**
+     * @return selected date packed with {@link PackedDate}, {@link PackedDate#NONE} if none is selected
+     */
+    public int getSelectedDate(){
+        return selectedDate;
+    }
+
+    /**
+     * @return today packed with {@link PackedDate}, as of the last refresh
+     */
+    int getToday(){
+        return today;
     }
 
     void setMonthEventFetcher(MonthEventFetcher monthEventFetcher){
         this.monthEventFetcher = monthEventFetcher;
+        invalidateMonthEvents();
+    }
+
+    void setEventProviderMonitor(EventProviderMonitor eventProviderMonitor){
+        this.eventProviderMonitor = eventProviderMonitor;
+        pageProviderNanos = 0;
+    }
+
+    void setMonthEventLoader(MonthEventLoader monthEventLoader){
+        this.monthEventLoader = monthEventLoader;
+        invalidateMonthEvents();
+    }
+
+    /**
+     * Set the grid view displaying the month, used for decorating the cells
+     * when the events are loaded asynchronously
+     * @param gridView grid view or recycler view of the cells
+     */
+    void setGridView(ViewGroup gridView){
+        this.gridView = gridView;
+    }
+
+    void removeGridView(View gridView){
+        if(this.gridView == gridView){
+            this.gridView = null;
+        }
     }
 
     public void setCellViewDrawer(IDateCellViewDrawer cellViewDrawer){
@@ -255,11 +1021,13 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
 
     public void setShowDatesOutsideMonth(boolean showDatesOutsideMonth){
         this.showDatesOutsideMonth = showDatesOutsideMonth;
+        invalidateMonthEvents();
         this.notifyDataSetChanged();
     }
 
 	public void setDecorateDatesOutsideMonth(boolean decorateDatesOutsideMonth) {
 		this.decorateDatesOutsideMonth = decorateDatesOutsideMonth;
+		invalidateMonthEvents();
 		this.notifyDataSetChanged();
 	}
 
@@ -270,15 +1038,21 @@ class FlexibleCalendarGridAdapter extends BaseAdapter {
 
     public void setFirstDayOfTheWeek(int firstDayOfTheWeek){
         monthDisplayHelper = new MonthDisplayHelper(year,month,firstDayOfTheWeek);
+        cellStatesValid = false;
+        invalidateMonthEvents();
         this.notifyDataSetChanged();
     }
 
-    public SelectedDateItem getUserSelectedItem(){
-        return userSelectedDateItem;
+    /**
+     * @return date selected by the user packed with {@link PackedDate}, {@link PackedDate#NONE} if none is selected
+     */
+    public int getUserSelectedDate(){
+        return userSelectedDate;
     }
 
-    public void setUserSelectedDateItem(SelectedDateItem selectedItem){
-        this.userSelectedDateItem = selectedItem;
+    public void setUserSelectedDate(int packedDate){
+        this.userSelectedDate = packedDate;
+        cellStatesValid = false;
         notifyDataSetChanged();
     }
 
@@ -3,6 +3,8 @@ package com.p_v.flexiblecalendar;
 import android.content.Context;
 import android.util.MonthDisplayHelper;
 
+import com.p_v.flexiblecalendar.entity.PackedDate;
+
 import java.text.DateFormatSymbols;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -13,6 +15,17 @@ import java.util.Locale;
  */
 public class FlexibleCalendarHelper {
 
+    /**
+     * Text of the days of the month, index 0 is unused
+     */
+    private static final String[] DAY_TEXT = new String[32];
+
+    static {
+        for(int i = 1; i < DAY_TEXT.length; i++){
+            DAY_TEXT[i] = String.valueOf(i);
+        }
+    }
+
     /**
      * Set the next month for the details passed
      * @param year year
@@ -47,6 +60,15 @@ public class FlexibleCalendarHelper {
         previousDate[1] = month;
     }
 
+    /**
+     * Get the text of the day without allocating a new string
+     * @param day day of the month, 1 to 31
+     * @return the shared text of the day
+     */
+    public static String getDayText(int day){
+        return DAY_TEXT[day];
+    }
+
     /**
      * @return Get the array for week days for the current locale
      */
@@ -108,4 +130,72 @@ public class FlexibleCalendarHelper {
         return (endYear - startYear) * 12 + endMonth - startMonth;
     }
 
+    /**
+     * @param year year
+     * @return true if the year is a leap year in the gregorian calendar
+     */
+    public static boolean isLeapYear(int year){
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Get the number of days in the month without creating a {@link Calendar}
+     * @param year year
+     * @param month month
+     * @return number of days in the month
+     */
+    public static int getDaysInMonth(int year, int month){
+        switch (month){
+            case Calendar.FEBRUARY:
+                return isLeapYear(year) ? 29 : 28;
+            case Calendar.APRIL:
+            case Calendar.JUNE:
+            case Calendar.SEPTEMBER:
+            case Calendar.NOVEMBER:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Get the number of days since 1970-01-01 for the date without creating a {@link Calendar}
+     * @param year year
+     * @param month month
+     * @param day day
+     * @return epoch day, negative for dates before 1970
+     */
+    public static int toEpochDay(int year, int month, int day){
+        int m = month + 1;
+        int y = m <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Set the date for the epoch day
+     * @param epochDay number of days since 1970-01-01
+     * @param date array of size 3 for holding year, month and day
+     */
+    public static void fromEpochDay(int epochDay, int[] date){
+        int packedDate = PackedDate.ofEpochDay(epochDay);
+        date[0] = PackedDate.getYear(packedDate);
+        date[1] = PackedDate.getMonth(packedDate);
+        date[2] = PackedDate.getDay(packedDate);
+    }
+
+    /**
+     * Get the day of the week for the epoch day
+     * @param epochDay number of days since 1970-01-01
+     * @return day of the week where 1 is SUNDAY, 2 is MONDAY ... 7 is SATURDAY
+     */
+    public static int getDayOfWeek(int epochDay){
+        // 1970-01-01 was a thursday
+        int dayOfWeek = (epochDay + 4) % 7;
+        return (dayOfWeek < 0 ? dayOfWeek + 7 : dayOfWeek) + 1;
+    }
+
 }
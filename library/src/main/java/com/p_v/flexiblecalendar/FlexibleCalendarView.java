@@ -1,10 +1,14 @@
 package com.p_v.flexiblecalendar;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.res.TypedArray;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IntDef;
 import android.support.v4.view.ViewPager;
+import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -15,10 +19,16 @@ import android.widget.GridView;
 import android.widget.LinearLayout;
 import android.widget.ListAdapter;
 
-import com.antonyt.infiniteviewpager.InfinitePagerAdapter;
+import com.p_v.flexiblecalendar.entity.EventCountsByDay;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+import com.p_v.flexiblecalendar.entity.MonthCellStates;
+import com.p_v.flexiblecalendar.entity.PackedDate;
 import com.p_v.flexiblecalendar.entity.SelectedDateItem;
-import com.p_v.flexiblecalendar.exception.HighValueException;
+import com.p_v.flexiblecalendar.provider.EventSnapshot;
+import com.p_v.flexiblecalendar.provider.MonthEventCache;
+import com.p_v.flexiblecalendar.provider.MultiSourceEventProvider;
 import com.p_v.flexiblecalendar.view.BaseCellView;
+import com.p_v.flexiblecalendar.view.IDateCellRenderer;
 import com.p_v.flexiblecalendar.entity.Event;
 import com.p_v.flexiblecalendar.view.impl.DateCellViewImpl;
 import com.p_v.flexiblecalendar.view.impl.WeekdayCellViewImpl;
@@ -29,6 +39,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * A Flexible calendar view
@@ -80,6 +91,90 @@ public class FlexibleCalendarView extends LinearLayout implements
         List<? extends Event> getEventsForTheDay(int year,int month, int day);
     }
 
+    /**
+     * Event Data Provider used for fetching the events of a range of dates in a single call.
+     * Called once for every month when the month page is initialized
+     */
+    public interface EventRangeDataProvider {
+        /**
+         * Get the events for all the dates between the start and the end date, both inclusive
+         *
+         * @param startYear start year
+         * @param startMonth start month
+         * @param startDay start day
+         * @param endYear end year
+         * @param endMonth end month
+         * @param endDay end day
+         * @return events bucketed by day, null if there are no events in the range
+         */
+        EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                         int endYear, int endMonth, int endDay);
+    }
+
+    /**
+     * Event Data Provider used for cells which only display the number of events of a day,
+     * see {@link com.p_v.flexiblecalendar.view.IEventCountCellView}. Meant to be answered from
+     * precomputed counters without creating the list of events. Called for the days of a month page
+     * when the page is loaded, off the main thread if the events are loaded asynchronously
+     */
+    public interface EventCountDataProvider {
+        /**
+         * Get the number of events of the day
+         *
+         * @param year year
+         * @param month month
+         * @param day day
+         * @param colors array to be filled with the color resources of the first events of the day,
+         *               at most colors.length colors are required
+         * @return number of events of the day
+         */
+        int getEventCountForTheDay(int year, int month, int day, int[] colors);
+    }
+
+    /**
+     * Index of the days having events, used for skipping the days without events
+     * instead of asking the event data providers. Must be safe to be called off the main thread
+     */
+    public interface EventDayMaskProvider {
+        /**
+         * @param year year
+         * @param month month
+         * @return mask of the days of the month having events, bit 0 for the first day of the month.
+         * {@link #ALL_DAYS_MASK} if any of the days can have events
+         */
+        int getEventDayMask(int year, int month);
+    }
+
+    /**
+     * Listener for the changes of the events. Can be called from any thread
+     */
+    public interface EventChangeListener {
+        /**
+         * Called when the events of the day changed
+         */
+        void onEventsChanged(int year, int month, int day);
+
+        /**
+         * Called when the events of the days between the start and the end date, both inclusive, changed
+         */
+        void onEventsChanged(int startYear, int startMonth, int startDay,
+                             int endYear, int endMonth, int endDay);
+
+        /**
+         * Called when the events of any day may have changed
+         */
+        void onAllEventsChanged();
+    }
+
+    /**
+     * Source pushing the changes of the events, see {@link #setEventChangeSource(EventChangeSource)}
+     */
+    public interface EventChangeSource {
+        void addEventChangeListener(EventChangeListener listener);
+
+        void removeEventChangeListener(EventChangeListener listener);
+    }
+
     /**
      * Listener for month change.
      */
@@ -106,6 +201,18 @@ public class FlexibleCalendarView extends LinearLayout implements
         void onDateClick(int year,int month, int day);
     }
 
+    /**
+     * Listener for the date clicks receiving the date packed in an int,
+     * read it with {@link PackedDate}
+     */
+    public interface OnPackedDateClickListener{
+        /**
+         * Called whenever a date cell is clicked
+         * @param packedDate selected date packed in an int
+         */
+        void onDateClick(int packedDate);
+    }
+
     /**
      * Default calendar view for internal usage
      */
@@ -144,9 +251,27 @@ public class FlexibleCalendarView extends LinearLayout implements
     public static final int RIGHT = 0;
     public static final int LEFT = 1;
 
-    private static final int HIGH_VALUE = 20000;
+    /**
+     * Day mask of a month in which any day can have events
+     */
+    public static final int ALL_DAYS_MASK = 0xFFFFFFFF;
+
+    /**
+     * Offset of the page after which a swipe is considered committed and the months are prefetched
+     */
+    private static final float PREFETCH_SWIPE_OFFSET = 0.1f;
+
+    /**
+     * Duration of the fade in of the month jumped to
+     */
+    private static final int MONTH_JUMP_FADE_DURATION = 200;
+
+    /*
+     * Month pager constants
+     */
+    public static final int PAGER_VIEW_PAGER = 0;
+    public static final int PAGER_RECYCLER_VIEW = 1;
 
-    private InfinitePagerAdapter monthInfPagerAdapter;
     private WeekdayNameDisplayAdapter weekdayDisplayAdapter;
     private MonthViewPagerAdapter monthViewPagerAdapter;
 
@@ -157,17 +282,55 @@ public class FlexibleCalendarView extends LinearLayout implements
     @Retention(RetentionPolicy.SOURCE)
     public @interface Direction{}
 
+    /**
+     * Pager of the months, either a view pager keeping a grid of cell views per page
+     * or a recycler view sharing the cell views between all the months
+     */
+    @IntDef({PAGER_VIEW_PAGER,PAGER_RECYCLER_VIEW})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface MonthPagerType{}
+
     private Context context;
     /**
      * View pager for the month view
      */
-    private MonthViewPager monthViewPager;
+    private MonthPager monthViewPager;
+    private int monthPagerType;
     private GridView weekDisplayView;
 
     private OnMonthChangeListener onMonthChangeListener;
     private OnDateClickListener onDateClickListener;
+    private OnPackedDateClickListener onPackedDateClickListener;
 
     private EventDataProvider eventDataProvider;
+    private EventRangeDataProvider eventRangeDataProvider;
+    private EventCountDataProvider eventCountDataProvider;
+    private EventDayMaskProvider eventDayMaskProvider;
+    /**
+     * Providers called for the events, timing each call when an {@link EventProviderMonitor} is set
+     */
+    private EventDataProvider calledEventDataProvider;
+    private EventRangeDataProvider calledRangeDataProvider;
+    private EventCountDataProvider calledCountDataProvider;
+    private EventSnapshot eventSnapshot;
+    private EventChangeSource eventChangeSource;
+    private EventChangeCoalescer eventChangeCoalescer;
+    private boolean attachedToWindow;
+    private boolean missedEventChanges;
+
+    /**
+     * Refreshes the current date of the month pages when the date changes while the view is attached
+     */
+    private final BroadcastReceiver dateChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            monthViewPagerAdapter.refreshToday();
+        }
+    };
+    private MonthPrefetcher monthPrefetcher;
+    private EventProviderMonitor eventProviderMonitor;
+    private MonthEventLoader monthEventLoader;
+    private MonthEventCache monthEventCache;
     private CalendarView calendarView;
 
     private int displayYear;
@@ -190,11 +353,22 @@ public class FlexibleCalendarView extends LinearLayout implements
     private boolean resetAdapters;
 
     /**
-     * Currently selected date item
+     * Month difference of the jump to the adjacent page, 0 if the pager is not jumping
      */
-    private SelectedDateItem selectedDateItem;
+    private int jumpMonthDifference;
 
-    private SelectedDateItem userSelectedItem;
+    private boolean animateMonthJump = true;
+
+    /**
+     * Currently selected date packed with {@link PackedDate}
+     */
+    private int selectedDate;
+
+    /**
+     * Date selected by the user when the auto selection is disabled, {@link PackedDate#NONE} until
+     * the user selects a date
+     */
+    private int userSelectedDate;
 
     /**
      * Internal flag to override the computed date on month change
@@ -213,6 +387,19 @@ public class FlexibleCalendarView extends LinearLayout implements
         this.context = context;
     }
 
+    /**
+     * Create the calendar with the pager of the months
+     * @param context context
+     * @param monthPagerType pager of the months, {@link #PAGER_RECYCLER_VIEW} shares the cell views
+     *                       between all the months
+     */
+    public FlexibleCalendarView(Context context, @MonthPagerType int monthPagerType){
+        super(context);
+        this.context = context;
+        this.monthPagerType = monthPagerType;
+        init(null);
+    }
+
     public FlexibleCalendarView(Context context, AttributeSet attrs){
         super(context,attrs);
         this.context = context;
@@ -251,7 +438,8 @@ public class FlexibleCalendarView extends LinearLayout implements
         this.addView(weekDisplayView);
 
         //setup month view
-        monthViewPager = new MonthViewPager(context);
+        monthViewPager = monthPagerType == PAGER_RECYCLER_VIEW ?
+                new MonthRecyclerPager(context) : new MonthViewPager(context);
         monthViewPager.setBackgroundResource(monthViewBackground);
         monthViewPager.setNumOfRows(showDatesOutsideMonth ? 6 : FlexibleCalendarHelper.getNumOfRowsForTheMonth(displayYear, displayMonth, startDayOfTheWeek));
         monthViewPagerAdapter = new MonthViewPagerAdapter(context, displayYear, displayMonth, this,
@@ -262,19 +450,17 @@ public class FlexibleCalendarView extends LinearLayout implements
         //set the default cell view
         monthViewPagerAdapter.setCellViewDrawer(new DateCellViewImpl(calendarView));
 
-        monthInfPagerAdapter = new InfinitePagerAdapter(monthViewPagerAdapter);
-        //Initializing with the offset value
-        lastPosition = monthInfPagerAdapter.getRealCount() * 100;
-        monthViewPager.setAdapter(monthInfPagerAdapter);
-        monthViewPager.setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+        monthViewPager.setMonthViewPagerAdapter(monthViewPagerAdapter);
+        lastPosition = monthViewPager.getStartPosition();
+        ((View) monthViewPager).setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
                 ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
         monthViewPager.addOnPageChangeListener(new MonthChangeListener());
 
         //initialize with the current selected item
-        selectedDateItem = new SelectedDateItem(displayYear, displayMonth,startDisplayDay);
-        monthViewPagerAdapter.setSelectedItem(selectedDateItem);
+        setSelectedDate(PackedDate.of(displayYear, displayMonth, startDisplayDay), false);
+        monthViewPagerAdapter.setSelectedDate(selectedDate);
 
-        this.addView(monthViewPager);
+        this.addView((View) monthViewPager);
     }
 
     private void setAttributes(AttributeSet attrs) {
@@ -303,6 +489,8 @@ public class FlexibleCalendarView extends LinearLayout implements
                 startDayOfTheWeek = Calendar.SUNDAY;
             }
 
+            monthPagerType = a.getInt(R.styleable.FlexibleCalendarView_monthPager, monthPagerType);
+
         } finally {
             a.recycle();
         }
@@ -312,8 +500,29 @@ public class FlexibleCalendarView extends LinearLayout implements
 
 
 
+        /**
+         * Month and direction of the last prefetch, a swipe prefetches only once
+         */
+        private int prefetchPosition = -1;
+        private int prefetchDirection;
+
         @Override
         public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+            if(monthPrefetcher == null || monthEventCache == null || eventRangeDataProvider == null) return;
+
+            int direction;
+            if(position == lastPosition && positionOffset > PREFETCH_SWIPE_OFFSET){
+                direction = RIGHT;
+            }else if(position == lastPosition - 1 && positionOffset < 1 - PREFETCH_SWIPE_OFFSET){
+                direction = LEFT;
+            }else{
+                return;
+            }
+            if(prefetchPosition == lastPosition && prefetchDirection == direction) return;
+            prefetchPosition = lastPosition;
+            prefetchDirection = direction;
+            monthPrefetcher.prefetch(monthEventCache, calledRangeDataProvider, displayYear, displayMonth,
+                    direction, showDatesOutsideMonth && decorateDatesOutsideMonth);
         }
 
         @Override
@@ -321,31 +530,36 @@ public class FlexibleCalendarView extends LinearLayout implements
             int direction = position>lastPosition? RIGHT : LEFT;
 
             //refresh the previous adapter and deselect the item
-            monthViewPagerAdapter.getMonthAdapterAtPosition(lastPosition % MonthViewPagerAdapter.VIEWS_IN_PAGER).setSelectedItem(null,true,false);
+            monthViewPagerAdapter.getMonthAdapterAtPosition(lastPosition % MonthViewPagerAdapter.VIEWS_IN_PAGER)
+                    .setSelectedDate(PackedDate.NONE, true, false);
             if(disableAutoDateSelection){
-                monthViewPagerAdapter.refreshUserSelectedItem(userSelectedItem);
+                monthViewPagerAdapter.refreshUserSelectedDate(userSelectedDate);
             }
 
-            SelectedDateItem newDateItem;
+            int newDate;
             if(shouldOverrideComputedDate){
-                //set the selectedDateItem as the newDateItem
-                newDateItem = selectedDateItem;
+                //set the selected date as the new date
+                newDate = selectedDate;
                 shouldOverrideComputedDate = false;
             }else{
-                //compute the new SelectedDateItem based on the difference in position
-                newDateItem = computeNewSelectedDateItem(lastPosition - position);
+                //compute the new selected date based on the difference in position
+                newDate = computeNewSelectedDate(jumpMonthDifference != 0 ?
+                        -jumpMonthDifference : lastPosition - position);
             }
+            jumpMonthDifference = 0;
 
+            //the date may have changed since the pages were displayed
+            monthViewPagerAdapter.refreshToday();
 
             //the month view pager adater will update here again
-            monthViewPagerAdapter.refreshDateAdapters(position % MonthViewPagerAdapter.VIEWS_IN_PAGER, newDateItem, resetAdapters);
+            monthViewPagerAdapter.refreshDateAdapters(position % MonthViewPagerAdapter.VIEWS_IN_PAGER, newDate, resetAdapters);
 
             //update last position
             lastPosition = position;
 
-            //update the currently selected date item
+            //update the currently selected date
             FlexibleCalendarGridAdapter adapter = monthViewPagerAdapter.getMonthAdapterAtPosition(position%MonthViewPagerAdapter.VIEWS_IN_PAGER);
-            selectedDateItem = adapter.getSelectedItem();
+            setSelectedDate(adapter.getSelectedDate(), false);
 
             displayYear = adapter.getYear();
             displayMonth = adapter.getMonth();
@@ -354,33 +568,16 @@ public class FlexibleCalendarView extends LinearLayout implements
                 onMonthChangeListener.onMonthChange(displayYear, displayMonth, direction);
             }
 
-            if(resetAdapters){
-                resetAdapters = false;
-                monthViewPager.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        //resetting fake count
-                        monthInfPagerAdapter.setFakeCount(-1);
-                        monthInfPagerAdapter.notifyDataSetChanged();
-                    }
-                });
-            }
-
+            resetAdapters = false;
         }
 
         @Override
         public void onPageScrollStateChanged(int state) {
+            monthViewPagerAdapter.setScrolling(state != ViewPager.SCROLL_STATE_IDLE);
         }
 
-        private SelectedDateItem computeNewSelectedDateItem(int difference){
-
-            Calendar cal = Calendar.getInstance();
-            cal.set(displayYear, displayMonth,1);
-            cal.add(Calendar.MONTH, -difference);
-
-            return new SelectedDateItem(cal.get(Calendar.YEAR),
-                    cal.get(Calendar.MONTH), 1);
-
+        private int computeNewSelectedDate(int difference){
+            return PackedDate.plusMonths(PackedDate.of(displayYear, displayMonth, 1), -difference);
         }
     }
 
@@ -447,8 +644,373 @@ public class FlexibleCalendarView extends LinearLayout implements
         this.onDateClickListener = onDateClickListener;
     }
 
+    public void setOnPackedDateClickListener(OnPackedDateClickListener onPackedDateClickListener){
+        this.onPackedDateClickListener = onPackedDateClickListener;
+    }
+
+    /**
+     * Set the per day event data provider. The provider is called for every day
+     * of the month when the month page is initialized, or only for the days having events
+     * if an {@link EventDayMaskProvider} is set or implemented by the provider
+     * @param eventDataProvider event data provider
+     */
     public void setEventDataProvider(EventDataProvider eventDataProvider){
         this.eventDataProvider = eventDataProvider;
+        this.eventRangeDataProvider = null;
+        updateCalledProviders();
+        if(monthEventCache != null){
+            monthEventCache.invalidateAll();
+        }
+        monthViewPagerAdapter.refreshMonthEvents();
+        redrawMonthGrid(-1);
+    }
+
+    /**
+     * Set the index of the days having events. Days and months without events are skipped
+     * without asking the event data providers. The index must be updated before notifying
+     * the changes of the events
+     * @param eventDayMaskProvider index of the days having events, null for asking the providers for every day
+     */
+    public void setEventDayMaskProvider(EventDayMaskProvider eventDayMaskProvider){
+        this.eventDayMaskProvider = eventDayMaskProvider;
+        updateCalledProviders();
+        if(monthEventCache != null){
+            monthEventCache.invalidateAll();
+        }
+        monthViewPagerAdapter.refreshMonthEvents();
+        redrawMonthGrid(-1);
+    }
+
+    /**
+     * Set up the providers called for the events after a provider or the monitor changed. The calls
+     * to the per day provider are timed one by one rather than the range built from them
+     */
+    private void updateCalledProviders(){
+        if(eventDataProvider != null){
+            calledEventDataProvider = eventProviderMonitor == null ?
+                    eventDataProvider : eventProviderMonitor.timeCalls(eventDataProvider);
+            eventRangeDataProvider = createDailyEventRangeDataProvider(calledEventDataProvider);
+            calledRangeDataProvider = eventRangeDataProvider;
+        }else{
+            calledEventDataProvider = null;
+            calledRangeDataProvider = eventProviderMonitor == null || eventRangeDataProvider == null ?
+                    eventRangeDataProvider : eventProviderMonitor.timeCalls(eventRangeDataProvider);
+        }
+        calledCountDataProvider = eventProviderMonitor == null || eventCountDataProvider == null ?
+                eventCountDataProvider : eventProviderMonitor.timeCalls(eventCountDataProvider);
+    }
+
+    /**
+     * @param calledEventDataProvider per day provider called for the events, the day mask is
+     *                                looked up on the provider set by the user
+     */
+    private DailyEventRangeDataProvider createDailyEventRangeDataProvider(EventDataProvider calledEventDataProvider){
+        if(eventDayMaskProvider != null){
+            return new DailyEventRangeDataProvider(calledEventDataProvider, eventDayMaskProvider);
+        }
+        return new DailyEventRangeDataProvider(calledEventDataProvider,
+                eventDataProvider instanceof EventDayMaskProvider ? (EventDayMaskProvider) eventDataProvider : null);
+    }
+
+    /**
+     * Notify that the events of a day changed. Only the cells displaying the day are decorated
+     * again, which is much cheaper than {@link #refresh()}
+     *
+     * @param year year
+     * @param month month
+     * @param day day
+     */
+    public void notifyEventsChanged(int year, int month, int day){
+        notifyEventsChanged(year, month, day, year, month, day);
+    }
+
+    /**
+     * Notify that the events of a month changed
+     *
+     * @param year year
+     * @param month month
+     */
+    public void notifyEventsChanged(int year, int month){
+        notifyEventsChanged(year, month, 1, year, month, FlexibleCalendarHelper.getDaysInMonth(year, month));
+    }
+
+    /**
+     * Notify that the events of the days between the start and end date, both inclusive, changed.
+     * Months in the pager not displaying any of the days are skipped
+     */
+    public void notifyEventsChanged(int startYear, int startMonth, int startDay,
+                                    int endYear, int endMonth, int endDay){
+        invalidateCachedEvents(startYear, startMonth, startDay, endYear, endMonth, endDay);
+        reloadMonthEvents(startYear, startMonth, startDay, endYear, endMonth, endDay);
+    }
+
+    /**
+     * Fetch again the events of the days in the month pages displaying any of them,
+     * without invalidating the event cache
+     */
+    void reloadMonthEvents(int startYear, int startMonth, int startDay,
+                           int endYear, int endMonth, int endDay){
+        monthViewPagerAdapter.reloadMonthEvents(EventsByDay.getDayKey(startYear, startMonth, startDay),
+                EventsByDay.getDayKey(endYear, endMonth, endDay));
+    }
+
+    /**
+     * Invalidate the days in the event cache, if any, without reloading the month pages
+     */
+    void invalidateCachedEvents(int startYear, int startMonth, int startDay,
+                                int endYear, int endMonth, int endDay){
+        if(monthEventCache == null) return;
+        int endMonthKey = endYear * 12 + endMonth;
+        for(int monthKey = startYear * 12 + startMonth; monthKey <= endMonthKey; monthKey++){
+            int year = monthKey / 12;
+            int month = monthKey % 12;
+            int daysInMonth = FlexibleCalendarHelper.getDaysInMonth(year, month);
+            int fromDay = monthKey == startYear * 12 + startMonth ? startDay : 1;
+            int toDay = monthKey == endMonthKey ? endDay : daysInMonth;
+            if(fromDay == 1 && toDay == daysInMonth){
+                monthEventCache.invalidateMonth(year, month);
+            }else{
+                for(int day = fromDay; day <= toDay; day++){
+                    monthEventCache.invalidateDay(year, month, day);
+                }
+            }
+        }
+    }
+
+    /**
+     * Show or hide a source of the {@link MultiSourceEventProvider} set as the range data provider.
+     * Only the cells whose merged events change are decorated again
+     *
+     * @param source the event source
+     * @param visible true to show the events of the source
+     */
+    public void setEventSourceVisible(MultiSourceEventProvider.EventSource source, boolean visible){
+        if(source.isVisible() == visible) return;
+        source.setVisible(visible);
+        notifyEventsChanged();
+    }
+
+    /**
+     * Notify that the events of any day may have changed. The events are fetched again
+     * and only the cells whose events changed are decorated again
+     */
+    public void notifyEventsChanged(){
+        if(monthEventCache != null){
+            monthEventCache.invalidateAll();
+        }
+        monthViewPagerAdapter.reloadMonthEvents();
+    }
+
+    /**
+     * Listen to the changes pushed by the source instead of notifying every change. The changes
+     * arriving within a frame are collected and the changed days are fetched once on the next frame.
+     * The source is listened to only while the calendar is attached to a window
+     *
+     * @param eventChangeSource source of the changes, null for stopping listening
+     */
+    public void setEventChangeSource(EventChangeSource eventChangeSource){
+        if(this.eventChangeSource != null && attachedToWindow){
+            this.eventChangeSource.removeEventChangeListener(eventChangeCoalescer);
+        }
+        this.eventChangeSource = eventChangeSource;
+        if(eventChangeSource != null){
+            if(eventChangeCoalescer == null){
+                eventChangeCoalescer = new EventChangeCoalescer(this);
+            }
+            if(attachedToWindow){
+                eventChangeSource.addEventChangeListener(eventChangeCoalescer);
+            }
+        }else if(eventChangeCoalescer != null){
+            eventChangeCoalescer.cancel();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attachedToWindow = true;
+        IntentFilter dateChangeFilter = new IntentFilter(Intent.ACTION_DATE_CHANGED);
+        dateChangeFilter.addAction(Intent.ACTION_TIME_CHANGED);
+        context.registerReceiver(dateChangeReceiver, dateChangeFilter);
+        //the date may have changed while detached
+        monthViewPagerAdapter.refreshToday();
+        if(eventChangeSource != null){
+            eventChangeSource.addEventChangeListener(eventChangeCoalescer);
+            if(missedEventChanges){
+                //changes pushed while detached were missed
+                eventChangeCoalescer.onAllEventsChanged();
+            }
+        }
+        missedEventChanges = false;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attachedToWindow = false;
+        context.unregisterReceiver(dateChangeReceiver);
+        if(eventChangeSource != null){
+            eventChangeSource.removeEventChangeListener(eventChangeCoalescer);
+            eventChangeCoalescer.cancel();
+            missedEventChanges = true;
+        }
+    }
+
+    /**
+     * Cache the events of the months fetched from the event data provider. Months served
+     * from the cache do not call the provider. {@link #refresh()} invalidates the whole cache,
+     * use {@link #notifyEventsChanged(int, int, int)} to fetch again only the changed days
+     *
+     * @param monthEventCache the cache, null to disable caching
+     */
+    public void setEventCache(MonthEventCache monthEventCache){
+        this.monthEventCache = monthEventCache;
+    }
+
+    /**
+     * Prefetch the events of the months in the direction of the swipe as soon as the user starts
+     * swiping, so that the month pages are decorated on their first frame. The months are fetched
+     * into the event cache on a background thread, set the cache with {@link #setEventCache(MonthEventCache)}
+     * first and size it to hold the pages, the prefetched months and the months of the dates outside
+     * the pages. Nothing is prefetched while the cache is removed.
+     * The event data provider must be safe to be called off the main thread
+     *
+     * @param monthsAhead number of months prefetched in the direction of the swipe, 0 for disabling prefetching
+     * @param monthsBehind number of months prefetched in the opposite direction
+     * @throws IllegalStateException if prefetching is enabled and no event cache is set
+     */
+    public void setEventPrefetch(int monthsAhead, int monthsBehind){
+        if(monthsAhead <= 0){
+            if(monthPrefetcher != null){
+                monthPrefetcher.cancel();
+                monthPrefetcher = null;
+            }
+            return;
+        }
+        if(monthEventCache == null){
+            throw new IllegalStateException("Set an event cache before enabling the prefetching");
+        }
+        if(monthPrefetcher == null){
+            monthPrefetcher = new MonthPrefetcher(monthsAhead, Math.max(monthsBehind, 0));
+        }else{
+            monthPrefetcher.setMonths(monthsAhead, Math.max(monthsBehind, 0));
+        }
+    }
+
+    /**
+     * Display snapshots of the month pages while swiping instead of drawing all the cells on every frame.
+     * The pages are rasterized once they are bound and the snapshots are taken again when the selection
+     * or the events change. Hardware accelerated pages use hardware layers, otherwise the snapshots are
+     * bitmaps from a pool holding at most one bitmap per page
+     *
+     * @param pageSnapshots true to enable the snapshots
+     */
+    public void setPageSnapshotsEnabled(boolean pageSnapshots){
+        monthViewPagerAdapter.setPageSnapshotsEnabled(pageSnapshots);
+    }
+
+    /**
+     * Time the calls made to the event data providers, reporting the calls and the month pages
+     * exceeding the budgets set on the monitor
+     * @param eventProviderMonitor monitor, null for not timing the calls
+     */
+    public void setEventProviderMonitor(EventProviderMonitor eventProviderMonitor){
+        this.eventProviderMonitor = eventProviderMonitor;
+        updateCalledProviders();
+        monthViewPagerAdapter.setEventProviderMonitor(eventProviderMonitor);
+    }
+
+    public EventProviderMonitor getEventProviderMonitor(){
+        return eventProviderMonitor;
+    }
+
+    /**
+     * @return the event cache, null if caching is disabled
+     */
+    public MonthEventCache getEventCache(){
+        return monthEventCache;
+    }
+
+    /**
+     * Load the events off the main thread. The month pages are displayed without the events
+     * and the cells are decorated once the events are loaded. Loading of a month which is
+     * swiped away is cancelled
+     *
+     * @param asyncEventLoading true to load the events asynchronously
+     */
+    public void setAsyncEventLoading(boolean asyncEventLoading){
+        if(asyncEventLoading == (monthEventLoader != null)) return;
+        setMonthEventLoader(asyncEventLoading ? new MonthEventLoader() : null);
+    }
+
+    /**
+     * Load the events asynchronously on the provided executor
+     *
+     * @param executor executor used for fetching the events, null to load the events on the main thread
+     */
+    public void setEventLoadingExecutor(ExecutorService executor){
+        setMonthEventLoader(executor == null ? null : new MonthEventLoader(executor));
+    }
+
+    /**
+     * @return true if the events are loaded off the main thread
+     */
+    public boolean isAsyncEventLoading(){
+        return monthEventLoader != null;
+    }
+
+    private void setMonthEventLoader(MonthEventLoader monthEventLoader){
+        this.monthEventLoader = monthEventLoader;
+        monthViewPagerAdapter.setMonthEventLoader(monthEventLoader);
+        monthViewPagerAdapter.refreshMonthEvents();
+        redrawMonthGrid(-1);
+    }
+
+    /**
+     * Set the range event data provider. The provider is called once
+     * for every month when the month page is initialized
+     * @param eventRangeDataProvider event range data provider
+     */
+    public void setEventRangeDataProvider(EventRangeDataProvider eventRangeDataProvider){
+        this.eventDataProvider = null;
+        this.eventRangeDataProvider = eventRangeDataProvider;
+        updateCalledProviders();
+        if(monthEventCache != null){
+            monthEventCache.invalidateAll();
+        }
+        monthViewPagerAdapter.refreshMonthEvents();
+        redrawMonthGrid(-1);
+    }
+
+    /**
+     * Set the provider of the event counts. Cells implementing
+     * {@link com.p_v.flexiblecalendar.view.IEventCountCellView} are decorated using this provider
+     * instead of the event data provider. The counts of a month page are fetched once for the page,
+     * through the event cache and off the main thread like the events
+     * @param eventCountDataProvider event count data provider
+     */
+    public void setEventCountDataProvider(EventCountDataProvider eventCountDataProvider){
+        this.eventCountDataProvider = eventCountDataProvider;
+        updateCalledProviders();
+        if(monthEventCache != null){
+            monthEventCache.invalidateAll();
+        }
+        monthViewPagerAdapter.refreshMonthEvents();
+        redrawMonthGrid(-1);
+    }
+
+    /**
+     * Set the snapshot used for decorating the month pages until their events are loaded
+     * from the event data provider. Used only with {@link #setAsyncEventLoading(boolean)}.
+     * Set a new snapshot once it is written again for displaying the new snapshot
+     * @param eventSnapshot event snapshot, null for rendering the cells undecorated while loading
+     */
+    public void setEventSnapshot(EventSnapshot eventSnapshot){
+        this.eventSnapshot = eventSnapshot;
+    }
+
+    public EventSnapshot getEventSnapshot(){
+        return eventSnapshot;
     }
 
    /* /**
@@ -465,37 +1027,45 @@ public class FlexibleCalendarView extends LinearLayout implements
     }
 */
     @Override
-    public void onDateClick(SelectedDateItem selectedItem) {
-        if(selectedDateItem.getYear()!=selectedItem.getYear() || selectedDateItem.getMonth()!=selectedItem.getMonth()){
+    public void onDateClick(int packedDate) {
+        int previousDate = selectedDate;
+        //the clicked date is the date selected by the user
+        setSelectedDate(packedDate, true);
+        if(!PackedDate.isSameMonth(previousDate, packedDate)){
             shouldOverrideComputedDate = true;
             //different month
-            int monthDifference = FlexibleCalendarHelper.getMonthDifference(selectedItem.getYear(), selectedItem.getMonth(),
-                    selectedDateItem.getYear(), selectedDateItem.getMonth());
-            this.selectedDateItem = selectedItem;
+            int monthDifference = FlexibleCalendarHelper.getMonthDifference(
+                    PackedDate.getYear(packedDate), PackedDate.getMonth(packedDate),
+                    PackedDate.getYear(previousDate), PackedDate.getMonth(previousDate));
             //move back or forth based on the monthDifference
             if(monthDifference > 0){
                 moveToPreviousMonth();
             }else{
                 moveToNextMonth();
             }
-        }else{
-            //do nothing if same month
-            this.selectedDateItem = selectedItem;
         }
 
         // redraw current month grid as the events were getting disappeared for selected day
         redrawMonthGrid(lastPosition % MonthViewPagerAdapter.VIEWS_IN_PAGER);
 
-        // set user selected date item
-        if(disableAutoDateSelection){
-            this.userSelectedItem = selectedItem.clone();
-        }
-
         if(onDateClickListener!=null) {
-            onDateClickListener.onDateClick(selectedItem.getYear(), selectedItem.getMonth(), selectedItem.getDay());
+            onDateClickListener.onDateClick(PackedDate.getYear(packedDate), PackedDate.getMonth(packedDate),
+                    PackedDate.getDay(packedDate));
+        }
+        if(onPackedDateClickListener!=null){
+            onPackedDateClickListener.onDateClick(packedDate);
         }
     }
 
+    /**
+     * @deprecated the date cells report the clicks with packed dates, use {@link #selectDate(int)}
+     * for selecting a date
+     */
+    @Deprecated
+    public void onDateClick(SelectedDateItem selectedItem) {
+        onDateClick(PackedDate.of(selectedItem));
+    }
+
     private void redrawMonthGrid(int position){
         if(position == -1){
             //redraw all
@@ -510,7 +1080,12 @@ public class FlexibleCalendarView extends LinearLayout implements
     }
 
     private void reAddAdapter(View view){
-        if(view!=null){
+        if(view instanceof MonthGridView){
+            view.requestLayout();
+            view.invalidate();
+        }else if(view instanceof RecyclerView){
+            ((RecyclerView)view).getAdapter().notifyDataSetChanged();
+        }else if(view!=null){
             ListAdapter adapter = ((GridView)view).getAdapter();
             ((GridView)view).setAdapter(adapter);
         }
@@ -520,18 +1095,39 @@ public class FlexibleCalendarView extends LinearLayout implements
      * @return currently selected date
      */
     public SelectedDateItem getSelectedDateItem(){
-        if(disableAutoDateSelection){
-            return userSelectedItem == null ? null : userSelectedItem.clone();
-        }
-        return selectedDateItem.clone();
+        int date = getSelectedPackedDate();
+        return date == PackedDate.NONE ? null
+                : new SelectedDateItem(PackedDate.getYear(date), PackedDate.getMonth(date), PackedDate.getDay(date));
+    }
+
+    /**
+     * @return currently selected date packed in an int, {@link PackedDate#NONE} if no date is selected.
+     * The date selected by the user when the auto selection is disabled, the same date as
+     * {@link #getSelectedDateItem()}
+     */
+    public int getSelectedPackedDate(){
+        return disableAutoDateSelection ? userSelectedDate : selectedDate;
+    }
+
+    /**
+     * Get the types and days of the cells of a month loaded in the pager, for reading the state of
+     * a cell in {@link CalendarView#getCellView(int, View, ViewGroup, int)} without computing it.
+     * The states are updated in place when the month or the selection changes
+     *
+     * @param year year
+     * @param month month
+     * @return states of the cells of the month, null if the month is not loaded in the pager
+     */
+    public MonthCellStates getMonthCellStates(int year, int month){
+        return monthViewPagerAdapter.getMonthCellStates(year, month);
     }
 
     public int getCurrentMonth(){
-        return selectedDateItem.getMonth();
+        return PackedDate.getMonth(selectedDate);
     }
 
     public int getCurrentYear(){
-        return selectedDateItem.getYear();
+        return PackedDate.getYear(selectedDate);
     }
 
     /**
@@ -540,29 +1136,21 @@ public class FlexibleCalendarView extends LinearLayout implements
     public void moveToPreviousDate(){
         // in case when auto selection is disabled
         // do nothing if there is nothing selected by the user
-        if(disableAutoDateSelection && userSelectedItem == null) return;
-
-        if(selectedDateItem!=null){
-            Calendar cal = Calendar.getInstance();
-            cal.set(selectedDateItem.getYear(), selectedDateItem.getMonth(), selectedDateItem.getDay());
-            cal.add(Calendar.DATE, -1);
+        if(disableAutoDateSelection && userSelectedDate == PackedDate.NONE) return;
 
-            if(selectedDateItem.getMonth()!=cal.get(Calendar.MONTH)) {
-                //update selected date item
-                selectedDateItem.setDay(cal.get(Calendar.DAY_OF_MONTH));
-                selectedDateItem.setMonth(cal.get(Calendar.MONTH));
-                selectedDateItem.setYear(cal.get(Calendar.YEAR));
+        if(selectedDate != PackedDate.NONE){
+            int date = selectedDate;
+            int previousDate = PackedDate.plusDays(date, -1);
+            setSelectedDate(previousDate, false);
 
+            if(!PackedDate.isSameMonth(date, previousDate)) {
                 //set true to override the computed date in onPageSelected method
                 shouldOverrideComputedDate = true;
 
                 //scroll to previous month
                 moveToPreviousMonth();
             }else{
-                selectedDateItem.setDay(cal.get(Calendar.DAY_OF_MONTH));
-                selectedDateItem.setMonth(cal.get(Calendar.MONTH));
-                selectedDateItem.setYear(cal.get(Calendar.YEAR));
-                monthViewPagerAdapter.setSelectedItem(selectedDateItem);
+                monthViewPagerAdapter.setSelectedDate(selectedDate);
             }
         }
     }
@@ -573,29 +1161,129 @@ public class FlexibleCalendarView extends LinearLayout implements
     public void moveToNextDate(){
         // in case when auto selection is disabled
         // do nothing if there is nothing selected by the user
-        if(disableAutoDateSelection && userSelectedItem == null) return;
-
-        if(selectedDateItem!=null){
+        if(disableAutoDateSelection && userSelectedDate == PackedDate.NONE) return;
 
-            Calendar cal = Calendar.getInstance();
-            cal.set(selectedDateItem.getYear(), selectedDateItem.getMonth(), selectedDateItem.getDay());
-            cal.add(Calendar.DATE, 1);
+        if(selectedDate != PackedDate.NONE){
+            int date = selectedDate;
+            int nextDate = PackedDate.plusDays(date, 1);
 
-            if(selectedDateItem.getMonth()!=cal.get(Calendar.MONTH)){
+            if(!PackedDate.isSameMonth(date, nextDate)){
                 moveToNextMonth();
             }else{
-                selectedDateItem.setDay(cal.get(Calendar.DAY_OF_MONTH));
-                selectedDateItem.setMonth(cal.get(Calendar.MONTH));
-                selectedDateItem.setYear(cal.get(Calendar.YEAR));
-                monthViewPagerAdapter.setSelectedItem(selectedDateItem);
+                setSelectedDate(nextDate, false);
+                monthViewPagerAdapter.setSelectedDate(selectedDate);
             }
         }
     }
 
+    /**
+     * Replace the selected date, every change of the selection goes through here. The callers
+     * pass the new date to the adapters
+     * @param packedDate selected date packed with {@link PackedDate}
+     * @param userSelected true if the user selected the date, kept as the user selection when the
+     *                     auto selection is disabled
+     */
+    private void setSelectedDate(int packedDate, boolean userSelected){
+        selectedDate = packedDate;
+        if(userSelected && disableAutoDateSelection){
+            userSelectedDate = packedDate;
+        }
+    }
+
     @Override
     public List<? extends Event> getEventsForTheDay(int year, int month, int day) {
-        return eventDataProvider == null?
-                null : eventDataProvider.getEventsForTheDay(year, month, day);
+        if(eventDataProvider != null){
+            return calledEventDataProvider.getEventsForTheDay(year, month, day);
+        }
+        EventsByDay eventsByDay = getEventsForTheRange(year, month, day, year, month, day);
+        return eventsByDay == null ? null : eventsByDay.get(year, month, day);
+    }
+
+    @Override
+    public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                            int endYear, int endMonth, int endDay) {
+        if(eventRangeDataProvider == null){
+            return null;
+        }
+        if(monthEventCache != null){
+            return monthEventCache.getEventsForTheRange(calledRangeDataProvider,
+                    startYear, startMonth, startDay, endYear, endMonth, endDay);
+        }
+        return calledRangeDataProvider.getEventsForTheRange(startYear, startMonth, startDay,
+                endYear, endMonth, endDay);
+    }
+
+    @Override
+    public int getEventDayMask(int year, int month) {
+        EventDayMaskProvider dayMaskProvider = getEventDayMaskProvider();
+        return dayMaskProvider == null ? ALL_DAYS_MASK : dayMaskProvider.getEventDayMask(year, month);
+    }
+
+    @Override
+    public EventsByDay getCachedEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                  int endYear, int endMonth, int endDay) {
+        if(monthEventCache == null || eventRangeDataProvider == null){
+            return null;
+        }
+        return monthEventCache.peekEventsForTheRange(startYear, startMonth, startDay, endYear, endMonth, endDay);
+    }
+
+    @Override
+    public EventsByDay getSnapshotEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                    int endYear, int endMonth, int endDay) {
+        return eventSnapshot == null ? null : eventSnapshot.getEventsForTheRange(startYear, startMonth, startDay,
+                endYear, endMonth, endDay);
+    }
+
+    @Override
+    public boolean hasEventCounts() {
+        return eventCountDataProvider != null;
+    }
+
+    @Override
+    public EventCountsByDay getEventCountsForTheRange(int maxColors, int startYear, int startMonth, int startDay,
+                                                      int endYear, int endMonth, int endDay) {
+        if(eventCountDataProvider == null){
+            return null;
+        }
+        if(monthEventCache != null){
+            return monthEventCache.getEventCountsForTheRange(calledCountDataProvider, getEventDayMaskProvider(),
+                    maxColors, startYear, startMonth, startDay, endYear, endMonth, endDay);
+        }
+        EventCountsByDay eventCounts = new EventCountsByDay(maxColors);
+        int endMonthKey = endYear * 12 + endMonth;
+        for(int monthKey = startYear * 12 + startMonth; monthKey <= endMonthKey; monthKey++){
+            int year = monthKey / 12;
+            int month = monthKey % 12;
+            int fromDay = monthKey == startYear * 12 + startMonth ? startDay : 1;
+            int toDay = monthKey == endMonthKey ? endDay : FlexibleCalendarHelper.getDaysInMonth(year, month);
+            eventCounts.putMonthCounts(calledCountDataProvider, year, month, fromDay, toDay,
+                    getEventDayMask(year, month));
+        }
+        return eventCounts;
+    }
+
+    @Override
+    public EventCountsByDay getCachedEventCountsForTheRange(int maxColors, int startYear, int startMonth, int startDay,
+                                                            int endYear, int endMonth, int endDay) {
+        if(monthEventCache == null || eventCountDataProvider == null){
+            return null;
+        }
+        return monthEventCache.peekEventCountsForTheRange(maxColors, startYear, startMonth, startDay,
+                endYear, endMonth, endDay);
+    }
+
+    /**
+     * @return provider of the days having events, null if every day can have events
+     */
+    private EventDayMaskProvider getEventDayMaskProvider(){
+        if(eventDayMaskProvider != null){
+            return eventDayMaskProvider;
+        }
+        if(eventRangeDataProvider instanceof EventDayMaskProvider){
+            return (EventDayMaskProvider) eventRangeDataProvider;
+        }
+        return null;
     }
 
     /**
@@ -609,6 +1297,21 @@ public class FlexibleCalendarView extends LinearLayout implements
         weekdayDisplayAdapter.getCellViewDrawer().setCalendarView(calendarView);
     }
 
+    /**
+     * Draw the date cells of every month page on a single view with the renderer instead of
+     * a grid of cell views. Saves measuring, laying out and keeping up to 42 cell views per page.
+     * The cell views of the {@link CalendarView} are not used for the month pages while a renderer is set
+     *
+     * @param dateCellRenderer cell renderer, null for displaying the cell views of the calendar view.
+     *                         See {@link com.p_v.flexiblecalendar.view.impl.DateCellRendererImpl}
+     */
+    public void setDateCellRenderer(IDateCellRenderer dateCellRenderer){
+        if(monthViewPagerAdapter.getDateCellRenderer() == dateCellRenderer) return;
+        monthViewPagerAdapter.setDateCellRenderer(dateCellRenderer);
+        //create all the pages again
+        monthViewPager.recreatePages();
+    }
+
     /**
      * Set the background resource for week view
      * @param resourceId
@@ -673,10 +1376,35 @@ public class FlexibleCalendarView extends LinearLayout implements
 
     /**
      * move to position with respect to current position
-     * for internal use
+     * for internal use. Months further than the adjacent ones are displayed on the adjacent
+     * page and jumped to, taking the same time whatever the distance to the month
      */
     private void moveToPosition(int position){
-        monthViewPager.setCurrentItem(lastPosition + position - monthInfPagerAdapter.getRealCount() * 100, true);
+        if(Math.abs(position) <= 1){
+            monthViewPager.setCurrentPosition(lastPosition + position, true);
+            return;
+        }
+        int targetPosition = lastPosition + (position > 0 ? 1 : -1);
+        int targetDate = PackedDate.plusMonths(PackedDate.of(displayYear, displayMonth, 1), position);
+        monthViewPagerAdapter.moveDateAdapter(targetPosition % MonthViewPagerAdapter.VIEWS_IN_PAGER,
+                PackedDate.getYear(targetDate), PackedDate.getMonth(targetDate));
+        jumpMonthDifference = position;
+        monthViewPager.setCurrentPosition(targetPosition, false);
+        if(animateMonthJump){
+            View pager = (View) monthViewPager;
+            pager.setAlpha(0f);
+            pager.animate().alpha(1f).setDuration(MONTH_JUMP_FADE_DURATION).start();
+        }
+    }
+
+    /**
+     * Fade in the month jumped to when moving to a month further than the adjacent ones,
+     * like when going to the current month or selecting a date years away. Default value is true
+     *
+     * @param animateMonthJump false for displaying the month right away
+     */
+    public void setAnimateMonthJump(boolean animateMonthJump){
+        this.animateMonthJump = animateMonthJump;
     }
 
     /**
@@ -696,11 +1424,6 @@ public class FlexibleCalendarView extends LinearLayout implements
 
         if(monthDifference!=0){
             resetAdapters = true;
-            if(monthDifference<0){
-                //set fake count to avoid freezing in InfiniteViewPager as it iterates to Integer.MAX_VALUE
-                monthInfPagerAdapter.setFakeCount(lastPosition);
-                monthInfPagerAdapter.notifyDataSetChanged();
-            }
             moveToPosition(monthDifference);
         }
     }
@@ -709,28 +1432,17 @@ public class FlexibleCalendarView extends LinearLayout implements
      * move the position to today's date
      */
     public void goToCurrentDay(){
+        //current date, kept up to date by the adapters
+        int today = monthViewPagerAdapter.getToday();
         //check has to go left side or right
-        int monthDifference = FlexibleCalendarHelper
-                .getMonthDifference(displayYear, displayMonth);
+        int monthDifference = FlexibleCalendarHelper.getMonthDifference(displayYear, displayMonth,
+                PackedDate.getYear(today), PackedDate.getMonth(today));
 
-        //current date
-        Calendar cal = Calendar.getInstance();
-        //update selected date item
-        selectedDateItem.setDay(cal.get(Calendar.DAY_OF_MONTH));
-        selectedDateItem.setMonth(cal.get(Calendar.MONTH));
-        selectedDateItem.setYear(cal.get(Calendar.YEAR));
-
-        if(disableAutoDateSelection){
-            this.userSelectedItem = selectedDateItem.clone();
-        }
+        //update selected date
+        setSelectedDate(today, true);
 
         if(monthDifference!=0){
             resetAdapters = true;
-            if(monthDifference<0){
-                //set fake count to avoid freezing in InfiniteViewPager as it iterates to Integer.MAX_VALUE
-                monthInfPagerAdapter.setFakeCount(lastPosition);
-                monthInfPagerAdapter.notifyDataSetChanged();
-            }
             //set true to override the computed date in onPageSelected method
             shouldOverrideComputedDate = true;
             moveToPosition(monthDifference);
@@ -801,9 +1513,14 @@ public class FlexibleCalendarView extends LinearLayout implements
     }
 
 	/**
-     * Refresh the calendar view. Invalidate and redraw all the cells
+     * Refresh the calendar view. Invalidate the event cache, fetch again the events and redraw all the cells.
+     * Use {@link #notifyEventsChanged(int, int, int)} when only the events of a few days changed
      */
     public void refresh(){
+        if(monthEventCache != null){
+            monthEventCache.invalidateAll();
+        }
+        monthViewPagerAdapter.refreshMonthEvents();
         redrawMonthGrid(-1);
     }
 
@@ -862,36 +1579,18 @@ public class FlexibleCalendarView extends LinearLayout implements
 
     /**
      * Select the date in the FlexibleCalendar
-     * @param newYear
-     * @param newMonth
-     * @param newDay
+     * @param packedDate date packed in an int with {@link PackedDate}
      */
-    public void selectDate(int newYear, int newMonth, int newDay) {
+    public void selectDate(int packedDate) {
         int monthDifference = FlexibleCalendarHelper
-                .getMonthDifference(selectedDateItem.getYear(),selectedDateItem.getMonth(),
-                        newYear,newMonth);
-
-        if(Math.abs(monthDifference) > HIGH_VALUE){
-            //throw exception for high values
-            throw new HighValueException("Difference too high to make the change");
-        }
-
-        selectedDateItem.setDay(newDay);
-        selectedDateItem.setMonth(newMonth);
-        selectedDateItem.setYear(newYear);
+                .getMonthDifference(getCurrentYear(), getCurrentMonth(),
+                        PackedDate.getYear(packedDate), PackedDate.getMonth(packedDate));
 
-        if(disableAutoDateSelection){
-            this.userSelectedItem = selectedDateItem.clone();
-        }
+        setSelectedDate(packedDate, true);
 
         if(monthDifference!=0){
             //different month
             resetAdapters = true;
-            if(monthDifference<0){
-                //set fake count to avoid freezing in InfiniteViewPager as it iterates to Integer.MAX_VALUE
-                monthInfPagerAdapter.setFakeCount(lastPosition);
-                monthInfPagerAdapter.notifyDataSetChanged();
-            }
             //set true to override the computed date in onPageSelected method
             shouldOverrideComputedDate = true;
             moveToPosition(monthDifference);
@@ -899,14 +1598,23 @@ public class FlexibleCalendarView extends LinearLayout implements
             if(disableAutoDateSelection){
                 monthViewPagerAdapter
                         .getMonthAdapterAtPosition(lastPosition % MonthViewPagerAdapter.VIEWS_IN_PAGER)
-                        .setSelectedItem(selectedDateItem, true, true);
+                        .setSelectedDate(selectedDate, true, true);
             }
         }else{
             monthViewPagerAdapter
                     .getMonthAdapterAtPosition(lastPosition % MonthViewPagerAdapter.VIEWS_IN_PAGER)
-                    .setSelectedItem(selectedDateItem, true, true);
+                    .setSelectedDate(selectedDate, true, true);
         }
+    }
 
+    /**
+     * Select the date in the FlexibleCalendar
+     * @param newYear
+     * @param newMonth
+     * @param newDay
+     */
+    public void selectDate(int newYear, int newMonth, int newDay) {
+        selectDate(PackedDate.of(newYear, newMonth, newDay));
     }
 
 }
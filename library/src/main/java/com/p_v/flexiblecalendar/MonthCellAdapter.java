@@ -0,0 +1,172 @@
+package com.p_v.flexiblecalendar;
+
+import android.database.DataSetObserver;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+/**
+ * Adapter of the cells of a month page of the recycler pager, displaying the cells of a
+ * {@link FlexibleCalendarGridAdapter}. The cell views are shared by all the months through a
+ * common recycled view pool, one view type per cell type, so the convert view passed to the cell
+ * views of the calendar view has the type of the cell. Each cell is held by a frame, so a cell view
+ * returning another view than the convert view replaces the cell of the frame
+ *
+ * @author p-v
+ */
+class MonthCellAdapter extends RecyclerView.Adapter<MonthCellAdapter.CellHolder> {
+
+    static final int COLUMNS = 7;
+
+    private FlexibleCalendarGridAdapter gridAdapter;
+    private RecyclerView cellsView;
+
+    private final DataSetObserver dataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            notifyDataSetChanged();
+        }
+    };
+
+    /**
+     * Single click listener of all the cells, resolving the month and the position from the page of the cell
+     */
+    private static final View.OnClickListener CELL_CLICK_LISTENER = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            View frame = (View) v.getParent();
+            RecyclerView cellsView = frame == null ? null : (RecyclerView) frame.getParent();
+            if(cellsView == null) return;
+            FlexibleCalendarGridAdapter adapter = ((MonthCellAdapter) cellsView.getAdapter()).gridAdapter;
+            int position = cellsView.getChildAdapterPosition(frame);
+            if(adapter != null && position != RecyclerView.NO_POSITION){
+                adapter.performDateClick(position);
+            }
+        }
+    };
+
+    /**
+     * Display the cells of the month adapter
+     * @param gridAdapter adapter of the month, null when the page is recycled
+     */
+    void setGridAdapter(FlexibleCalendarGridAdapter gridAdapter){
+        if(this.gridAdapter != gridAdapter){
+            if(this.gridAdapter != null){
+                this.gridAdapter.unregisterDataSetObserver(dataSetObserver);
+            }
+            this.gridAdapter = gridAdapter;
+            if(gridAdapter != null){
+                gridAdapter.registerDataSetObserver(dataSetObserver);
+            }
+        }
+        //the month of the adapter may have changed without notifying
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        cellsView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        cellsView = null;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return gridAdapter.getCellType(position);
+    }
+
+    @Override
+    public CellHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        CellHolder holder = new CellHolder(new FrameLayout(parent.getContext()));
+        holder.setCellView(gridAdapter.createCellView(holder.frame, viewType));
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(CellHolder holder, int position) {
+        View cellView = gridAdapter.getView(position, holder.cellView, holder.frame);
+        if(cellView != holder.cellView){
+            //the cell view returned another view than the convert view
+            holder.setCellView(cellView);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return gridAdapter == null ? 0 : gridAdapter.getCount();
+    }
+
+    /**
+     * @param itemView view of a cell holder
+     * @return cell view held by the holder
+     */
+    static View getCellView(View itemView){
+        return ((ViewGroup) itemView).getChildAt(0);
+    }
+
+    static class CellHolder extends RecyclerView.ViewHolder {
+
+        private final FrameLayout frame;
+        private View cellView;
+
+        CellHolder(FrameLayout frame) {
+            super(frame);
+            this.frame = frame;
+        }
+
+        /**
+         * Replace the cell view held by the frame
+         */
+        void setCellView(View cellView){
+            if(this.cellView != null){
+                this.cellView.setOnClickListener(null);
+                frame.removeView(this.cellView);
+            }
+            this.cellView = cellView;
+            if(cellView.getParent() instanceof ViewGroup){
+                ((ViewGroup) cellView.getParent()).removeView(cellView);
+            }
+            cellView.setOnClickListener(CELL_CLICK_LISTENER);
+            frame.addView(cellView);
+        }
+    }
+
+    /**
+     * Spacing between the cells, the same as the spacing of the month grid view
+     */
+    static class SpacingDecoration extends RecyclerView.ItemDecoration {
+
+        private final int horizontalSpacing;
+        private final int verticalSpacing;
+
+        SpacingDecoration(int horizontalSpacing, int verticalSpacing){
+            this.horizontalSpacing = horizontalSpacing;
+            this.verticalSpacing = verticalSpacing;
+        }
+
+        @Override
+        public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
+            int position = parent.getChildAdapterPosition(view);
+            if(position == RecyclerView.NO_POSITION){
+                outRect.set(0, 0, 0, 0);
+                return;
+            }
+            int column = position % COLUMNS;
+            //every cell loses the same width to the spacing
+            outRect.left = column * horizontalSpacing / COLUMNS;
+            outRect.right = horizontalSpacing - (column + 1) * horizontalSpacing / COLUMNS;
+            outRect.top = position < COLUMNS ? 0 : verticalSpacing;
+            outRect.bottom = 0;
+        }
+    }
+}
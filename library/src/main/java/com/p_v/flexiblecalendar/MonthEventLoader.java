@@ -0,0 +1,136 @@
+package com.p_v.flexiblecalendar;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the events of a month page on a background executor
+ * and delivers the result on the main thread
+ *
+ * @author p-v
+ */
+class MonthEventLoader {
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    MonthEventLoader(){
+        this(createDefaultExecutor("FlexibleCalendar-EventLoader"));
+    }
+
+    MonthEventLoader(ExecutorService executor){
+        this.executor = executor;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Fetch the events for the range on the executor
+     * @param monthEventFetcher fetcher used for the events
+     * @param range start year, month, day and end year, month, day
+     * @param parts parts of the page events to fetch, see {@link PageEvents#fetch(FlexibleCalendarGridAdapter.MonthEventFetcher, int[], int, int)}
+     * @param countColors number of colors fetched with the counts
+     * @param callback called on the main thread with the events unless the request is cancelled
+     * @return the load request which can be cancelled
+     */
+    LoadRequest load(FlexibleCalendarGridAdapter.MonthEventFetcher monthEventFetcher,
+                     int[] range, int parts, int countColors, Callback callback){
+        LoadRequest request = new LoadRequest(monthEventFetcher, range, parts, countColors, callback);
+        executor.execute(request);
+        return request;
+    }
+
+    /**
+     * @param threadName name of the background thread
+     * @return single thread executor whose thread dies when idle
+     */
+    static ExecutorService createDefaultExecutor(final String threadName){
+        //single thread which dies when idle so that no thread is kept alive for the calendar
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    interface Callback {
+        /**
+         * @param pageEvents loaded events and counts
+         */
+        void onEventsLoaded(PageEvents pageEvents);
+    }
+
+    /**
+     * A single load request. Cancelling the request skips the fetch if it has not
+     * started yet and drops the result otherwise
+     */
+    class LoadRequest implements Runnable {
+
+        private final FlexibleCalendarGridAdapter.MonthEventFetcher monthEventFetcher;
+        private final int[] range;
+        private final int parts;
+        private final int countColors;
+        private final Callback callback;
+        private volatile boolean cancelled;
+
+        private LoadRequest(FlexibleCalendarGridAdapter.MonthEventFetcher monthEventFetcher,
+                            int[] range, int parts, int countColors, Callback callback){
+            this.monthEventFetcher = monthEventFetcher;
+            this.range = range;
+            this.parts = parts;
+            this.countColors = countColors;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            if(cancelled) return;
+            //the provider calls are timed on this thread, so the slow calls are logged with its stack
+            final PageEvents pageEvents = PageEvents.fetch(monthEventFetcher, range, parts, countColors);
+            if(cancelled) return;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(!cancelled){
+                        callback.onEventsLoaded(pageEvents);
+                    }
+                }
+            });
+        }
+
+        void cancel(){
+            cancelled = true;
+        }
+
+        boolean isCancelled(){
+            return cancelled;
+        }
+
+        /**
+         * @return parts of the page events fetched by the request
+         */
+        int getParts(){
+            return parts;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.p_v.flexiblecalendar;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.text.format.DateUtils;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.PackedDate;
+import com.p_v.flexiblecalendar.view.BaseCellView;
+import com.p_v.flexiblecalendar.view.IDateCellRenderer;
+
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Month page drawing all the date cells on a single view with an {@link IDateCellRenderer},
+ * instead of a grid of cell views. The cells are square and laid out like the cells of the
+ * month grid view. Date clicks are found by hit testing the touch position. The events are
+ * loaded when the page is bound and drawn as loaded, drawing never calls the event providers.
+ * Every visible cell is exposed to the accessibility services as a virtual view
+ *
+ * @author p-v
+ */
+class MonthGridView extends View {
+
+    private static final int COLUMNS = 7;
+
+    private FlexibleCalendarGridAdapter adapter;
+    private IDateCellRenderer cellRenderer;
+    private int horizontalSpacing;
+    private int verticalSpacing;
+    private int cellSize;
+
+    private final Rect cellBounds = new Rect();
+    private final int[] date = new int[3];
+    private int touchedPosition = -1;
+    private final CellAccessibilityHelper accessibilityHelper;
+
+    private final DataSetObserver dataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            adapter.bindPageEvents();
+            if(getRowCount() != displayedRowCount){
+                requestLayout();
+            }
+            invalidate();
+            accessibilityHelper.invalidateRoot();
+        }
+
+        @Override
+        public void onInvalidated() {
+            adapter.bindPageEvents();
+            requestLayout();
+            invalidate();
+            accessibilityHelper.invalidateRoot();
+        }
+    };
+    private boolean attached;
+    private boolean observerRegistered;
+    private int displayedRowCount;
+
+    MonthGridView(Context context){
+        super(context);
+        accessibilityHelper = new CellAccessibilityHelper(this);
+        ViewCompat.setAccessibilityDelegate(this, accessibilityHelper);
+    }
+
+    void setAdapter(FlexibleCalendarGridAdapter adapter){
+        unregisterObserver();
+        this.adapter = adapter;
+        if(adapter != null){
+            //the events are loaded when the page is bound, never while drawing it
+            adapter.bindPageEvents();
+        }
+        if(attached){
+            registerObserver();
+        }
+        requestLayout();
+        invalidate();
+        accessibilityHelper.invalidateRoot();
+    }
+
+    FlexibleCalendarGridAdapter getAdapter(){
+        return adapter;
+    }
+
+    void setCellRenderer(IDateCellRenderer cellRenderer){
+        this.cellRenderer = cellRenderer;
+        invalidate();
+    }
+
+    void setSpacing(int horizontalSpacing, int verticalSpacing){
+        this.horizontalSpacing = horizontalSpacing;
+        this.verticalSpacing = verticalSpacing;
+        requestLayout();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attached = true;
+        registerObserver();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attached = false;
+        unregisterObserver();
+    }
+
+    private void registerObserver(){
+        if(adapter != null && !observerRegistered){
+            adapter.registerDataSetObserver(dataSetObserver);
+            observerRegistered = true;
+        }
+    }
+
+    private void unregisterObserver(){
+        if(adapter != null && observerRegistered){
+            adapter.unregisterDataSetObserver(dataSetObserver);
+            observerRegistered = false;
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        cellSize = Math.max(0, (width - getPaddingLeft() - getPaddingRight()
+                - (COLUMNS - 1) * horizontalSpacing) / COLUMNS);
+        displayedRowCount = getRowCount();
+        int height = getPaddingTop() + getPaddingBottom() + displayedRowCount * cellSize
+                + Math.max(0, displayedRowCount - 1) * verticalSpacing;
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    private int getRowCount(){
+        return adapter == null ? 0 : (adapter.getCount() + COLUMNS - 1) / COLUMNS;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if(adapter == null || cellRenderer == null || cellSize == 0) return;
+        for(int position = 0, count = adapter.getCount(); position < count; position++){
+            if(!adapter.isCellVisible(position)) continue;
+            getCellBounds(position, cellBounds);
+            List<? extends Event> events = adapter.getEventsAtPosition(position, date);
+            cellRenderer.drawCell(canvas, cellBounds, adapter.getDayAtPosition(position),
+                    adapter.getCellType(position), events);
+        }
+    }
+
+    private void getCellBounds(int position, Rect bounds){
+        int left = getPaddingLeft() + (position % COLUMNS) * (cellSize + horizontalSpacing);
+        int top = getPaddingTop() + (position / COLUMNS) * (cellSize + verticalSpacing);
+        bounds.set(left, top, left + cellSize, top + cellSize);
+    }
+
+    /**
+     * @return position of the cell at the point, -1 if there is no cell at the point
+     */
+    private int getPositionAt(float x, float y){
+        if(adapter == null || cellSize == 0) return -1;
+        int left = (int) x - getPaddingLeft();
+        int top = (int) y - getPaddingTop();
+        if(left < 0 || top < 0) return -1;
+        int col = left / (cellSize + horizontalSpacing);
+        int row = top / (cellSize + verticalSpacing);
+        // points on the spacing between the cells do not belong to any cell
+        if(col >= COLUMNS || left % (cellSize + horizontalSpacing) >= cellSize
+                || top % (cellSize + verticalSpacing) >= cellSize){
+            return -1;
+        }
+        int position = row * COLUMNS + col;
+        return position < adapter.getCount() && adapter.isCellVisible(position) ? position : -1;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()){
+            case MotionEvent.ACTION_DOWN:
+                touchedPosition = getPositionAt(event.getX(), event.getY());
+                return touchedPosition != -1;
+            case MotionEvent.ACTION_MOVE:
+                if(touchedPosition != -1 && getPositionAt(event.getX(), event.getY()) != touchedPosition){
+                    touchedPosition = -1;
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                if(touchedPosition != -1 && getPositionAt(event.getX(), event.getY()) == touchedPosition){
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    performDateClick(touchedPosition);
+                }
+                touchedPosition = -1;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                touchedPosition = -1;
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    private void performDateClick(int position){
+        adapter.performDateClick(position);
+        accessibilityHelper.sendEventForVirtualView(position, AccessibilityEvent.TYPE_VIEW_CLICKED);
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return accessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    /**
+     * Exposes the visible cells as virtual views identified by their position, announced with their date
+     */
+    private class CellAccessibilityHelper extends ExploreByTouchHelper {
+
+        private final Calendar calendar = Calendar.getInstance();
+
+        CellAccessibilityHelper(View host){
+            super(host);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            int position = getPositionAt(x, y);
+            return position == -1 ? INVALID_ID : position;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            if(adapter == null || cellSize == 0) return;
+            for(int position = 0, count = adapter.getCount(); position < count; position++){
+                if(adapter.isCellVisible(position)){
+                    virtualViewIds.add(position);
+                }
+            }
+        }
+
+        @Override
+        protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+            event.setContentDescription(getCellDescription(virtualViewId));
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+            getCellBounds(virtualViewId, cellBounds);
+            node.setBoundsInParent(cellBounds);
+            node.setContentDescription(getCellDescription(virtualViewId));
+            int cellType = adapter.getCellType(virtualViewId);
+            node.setSelected(cellType == BaseCellView.SELECTED || cellType == BaseCellView.SELECTED_TODAY);
+            node.setClickable(true);
+            node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+            if(action == AccessibilityNodeInfoCompat.ACTION_CLICK){
+                performDateClick(virtualViewId);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return date of the cell formatted with the weekday and the year
+         */
+        private String getCellDescription(int position){
+            if(adapter == null || position < 0 || position >= adapter.getCount()) return "";
+            int date = adapter.getPackedDateAtPosition(position);
+            calendar.clear();
+            calendar.set(PackedDate.getYear(date), PackedDate.getMonth(date), PackedDate.getDay(date));
+            return DateUtils.formatDateTime(getContext(), calendar.getTimeInMillis(),
+                    DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_SHOW_YEAR);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.p_v.flexiblecalendar;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.widget.LinearLayout;
+
+/**
+ * Month page which can display a snapshot of its cells while the pager scrolls.
+ * The snapshot is taken while the pager is idle once all the cells are bound, and is
+ * dropped and scheduled again whenever the page is bound or its cells change. Hardware
+ * accelerated pages use a hardware layer while scrolling instead of a bitmap
+ *
+ * @author p-v
+ */
+class MonthPageLayout extends LinearLayout implements FlexibleCalendarGridAdapter.OnCellsChangedListener {
+
+    private FlexibleCalendarGridAdapter adapter;
+    private PageSnapshotPool snapshotPool;
+    private Bitmap snapshot;
+    private boolean snapshotValid;
+    private boolean scrolling;
+    private boolean capturing;
+
+    private final Runnable captureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            captureSnapshot();
+        }
+    };
+
+    MonthPageLayout(Context context){
+        super(context);
+    }
+
+    /**
+     * Set the adapter of the month displayed by the page, the pages of the recycler pager
+     * display another month every time they are bound
+     * @param adapter adapter of the month, null when the page is recycled
+     */
+    void setAdapter(FlexibleCalendarGridAdapter adapter){
+        if(this.adapter == adapter) return;
+        if(this.adapter != null){
+            this.adapter.removeOnCellsChangedListener(this);
+        }
+        this.adapter = adapter;
+        if(adapter != null){
+            adapter.setOnCellsChangedListener(this);
+        }
+        invalidateSnapshot();
+    }
+
+    /**
+     * @param snapshotPool pool of the snapshot bitmaps, null for disabling the snapshots
+     */
+    void setSnapshotPool(PageSnapshotPool snapshotPool){
+        if(this.snapshotPool == snapshotPool) return;
+        releaseSnapshot();
+        this.snapshotPool = snapshotPool;
+        if(snapshotPool == null){
+            setScrolling(false);
+        }else if(!scrolling){
+            scheduleCapture();
+        }
+    }
+
+    /**
+     * Display the snapshot instead of the cells while the pager scrolls. Set on every new page
+     * too, as pages can be created in the middle of a scroll
+     */
+    void setScrolling(boolean scrolling){
+        scrolling = scrolling && snapshotPool != null;
+        if(this.scrolling == scrolling) return;
+        this.scrolling = scrolling;
+        if(isHardwareAccelerated()){
+            setLayerType(this.scrolling ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE, null);
+        }else if(snapshotValid){
+            invalidate();
+        }else if(!this.scrolling){
+            scheduleCapture();
+        }
+    }
+
+    @Override
+    public void onCellsChanged() {
+        invalidateSnapshot();
+    }
+
+    /**
+     * Drop the snapshot and take it again once the page is idle, even if no snapshot was taken yet
+     * as the capture may have been skipped while the cells were not bound
+     */
+    private void invalidateSnapshot(){
+        snapshotValid = false;
+        if(scrolling){
+            //draw the live cells for the rest of the scroll
+            invalidate();
+        }else{
+            scheduleCapture();
+        }
+    }
+
+    /**
+     * Release the snapshot bitmap to the pool, called when the page is destroyed
+     */
+    void releaseSnapshot(){
+        removeCallbacks(captureRunnable);
+        snapshotValid = false;
+        if(snapshot != null){
+            snapshotPool.release(snapshot);
+            snapshot = null;
+        }
+    }
+
+    private void scheduleCapture(){
+        if(snapshotPool == null || isHardwareAccelerated()) return;
+        removeCallbacks(captureRunnable);
+        post(captureRunnable);
+    }
+
+    private void captureSnapshot(){
+        if(snapshotPool == null || scrolling || snapshotValid) return;
+        int width = getWidth();
+        int height = getHeight();
+        if(width == 0 || height == 0 || isLayoutRequested() || adapter == null || !adapter.isPageBound()){
+            //taken on the next live draw
+            return;
+        }
+        if(snapshot != null && (snapshot.getWidth() != width || snapshot.getHeight() != height)){
+            snapshotPool.release(snapshot);
+            snapshot = null;
+        }
+        if(snapshot == null){
+            snapshot = snapshotPool.obtain(width, height);
+            if(snapshot == null) return;
+        }
+        snapshot.eraseColor(Color.TRANSPARENT);
+        capturing = true;
+        try{
+            draw(snapshotPool.getCanvas(snapshot));
+        }finally {
+            capturing = false;
+        }
+        snapshotValid = true;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if(scrolling && snapshotValid && !capturing){
+            canvas.drawBitmap(snapshot, 0, 0, null);
+            return;
+        }
+        super.dispatchDraw(canvas);
+        if(!capturing && !scrolling && !snapshotValid){
+            scheduleCapture();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        //the layer of a page created while scrolling is set once the page is attached
+        if(scrolling && isHardwareAccelerated()){
+            setLayerType(LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(captureRunnable);
+    }
+}
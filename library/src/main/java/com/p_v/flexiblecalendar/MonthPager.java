@@ -0,0 +1,48 @@
+package com.p_v.flexiblecalendar;
+
+import android.support.v4.view.ViewPager;
+import android.view.View;
+
+/**
+ * Horizontal pager of the months. The month at a position is displayed by the adapter
+ * at the position modulo {@link MonthViewPagerAdapter#VIEWS_IN_PAGER} of the month view pager adapter
+ *
+ * @author p-v
+ */
+interface MonthPager {
+
+    void setMonthViewPagerAdapter(MonthViewPagerAdapter monthViewPagerAdapter);
+
+    /**
+     * @return position of the month displayed first, a multiple of {@link MonthViewPagerAdapter#VIEWS_IN_PAGER}
+     */
+    int getStartPosition();
+
+    /**
+     * Move to the position, notifying the page change listeners
+     * @param position absolute position of the month
+     * @param smoothScroll true to scroll to the position
+     */
+    void setCurrentPosition(int position, boolean smoothScroll);
+
+    /**
+     * Create all the pages again, called when the type of the pages changes
+     */
+    void recreatePages();
+
+    void addOnPageChangeListener(ViewPager.OnPageChangeListener listener);
+
+    void setNumOfRows(int numOfRows);
+
+    /*
+     * View methods
+     */
+
+    void setBackgroundResource(int resid);
+
+    void invalidate();
+
+    boolean post(Runnable action);
+
+    View findViewWithTag(Object tag);
+}
@@ -0,0 +1,90 @@
+package com.p_v.flexiblecalendar;
+
+import com.p_v.flexiblecalendar.provider.MonthEventCache;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Warms the {@link MonthEventCache} with the events of the months the user is swiping
+ * towards, so that the month pages find their events in the cache when they are initialized.
+ * More months are fetched in the direction of travel than in the opposite direction.
+ * <p>
+ * The months are fetched one at a time on a background thread. Starting a new prefetch
+ * drops the months of the previous prefetch which are not fetched yet.
+ *
+ * @author p-v
+ */
+class MonthPrefetcher {
+
+    private final ExecutorService executor;
+    private int monthsAhead;
+    private int monthsBehind;
+
+    /**
+     * Incremented on every prefetch, used for dropping the outdated prefetches
+     */
+    private volatile int generation;
+
+    MonthPrefetcher(int monthsAhead, int monthsBehind){
+        this.executor = MonthEventLoader.createDefaultExecutor("FlexibleCalendar-Prefetcher");
+        setMonths(monthsAhead, monthsBehind);
+    }
+
+    void setMonths(int monthsAhead, int monthsBehind){
+        this.monthsAhead = monthsAhead;
+        this.monthsBehind = monthsBehind;
+    }
+
+    int getMonthsAhead(){
+        return monthsAhead;
+    }
+
+    int getMonthsBehind(){
+        return monthsBehind;
+    }
+
+    /**
+     * Fetch the months around the displayed month into the cache
+     *
+     * @param cache cache to be warmed
+     * @param provider provider of the events
+     * @param year displayed year
+     * @param month displayed month
+     * @param direction direction of travel, {@link FlexibleCalendarView#RIGHT} towards the next months
+     * @param withAdjacentMonths true if the pages display the events of the dates outside the month,
+     *                           which need the months next to the prefetched months too
+     */
+    void prefetch(final MonthEventCache cache, final FlexibleCalendarView.EventRangeDataProvider provider,
+                  int year, int month, @FlexibleCalendarView.Direction int direction, boolean withAdjacentMonths){
+        final int prefetchGeneration = ++generation;
+        int step = direction == FlexibleCalendarView.RIGHT ? 1 : -1;
+        int displayedKey = year * 12 + month;
+        int extra = withAdjacentMonths ? 1 : 0;
+
+        // nearest months first, months ahead before the months behind
+        final int[] monthKeys = new int[monthsAhead + monthsBehind + 2 * extra];
+        int count = 0;
+        for(int i = 1; i <= monthsAhead + extra; i++){
+            monthKeys[count++] = displayedKey + i * step;
+        }
+        for(int i = 1; i <= monthsBehind + extra; i++){
+            monthKeys[count++] = displayedKey - i * step;
+        }
+        final int monthCount = count;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < monthCount && generation == prefetchGeneration; i++){
+                    cache.getMonthEvents(provider, monthKeys[i] / 12, monthKeys[i] % 12);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the months which are not fetched yet
+     */
+    void cancel(){
+        generation++;
+    }
+}
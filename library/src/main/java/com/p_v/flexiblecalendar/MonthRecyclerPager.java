@@ -0,0 +1,292 @@
+package com.p_v.flexiblecalendar;
+
+import android.content.Context;
+import android.support.v4.view.ViewPager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.p_v.flexiblecalendar.view.BaseCellView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Month pager built on a horizontal {@link RecyclerView} snapping to the pages. The pages are recycled
+ * and bound again to the adapter of their position, and the cell views of all the months come from
+ * a single recycled view pool instead of every page keeping its own cells
+ *
+ * @author p-v
+ */
+class MonthRecyclerPager extends RecyclerView implements MonthPager {
+
+    private static final int PAGE_CELLS = 0;
+    private static final int PAGE_RENDERED = 1;
+
+    /**
+     * Start in the middle of the pages for paging through the months in both directions
+     */
+    private static final int START_POSITION = MonthViewPagerAdapter.VIEWS_IN_PAGER
+            * (Integer.MAX_VALUE / (2 * MonthViewPagerAdapter.VIEWS_IN_PAGER));
+
+    /**
+     * Cell views kept in the pool for the regular cells and the cells outside the month,
+     * enough for binding a whole month
+     */
+    private static final int CELL_POOL_SIZE = 42;
+    /**
+     * Cell views kept in the pool for the today and selected cells, a month displays only a few of them
+     */
+    private static final int MARKED_CELL_POOL_SIZE = 2;
+
+    private final PageLayoutManager layoutManager;
+    private final RecycledViewPool cellViewPool = new RecycledViewPool();
+    private final PageAdapter pageAdapter = new PageAdapter();
+    private final List<ViewPager.OnPageChangeListener> onPageChangeListeners = new ArrayList<>();
+    private MonthViewPagerAdapter monthViewPagerAdapter;
+
+    private int currentPosition = START_POSITION;
+    private int pageScrollState = SCROLL_STATE_IDLE;
+    /**
+     * Height of the pages for the width they were measured with, 0 until measured
+     */
+    private int pageHeight;
+    private int pageHeightWidth;
+    private int numOfRows;
+
+    public MonthRecyclerPager(Context context) {
+        super(context);
+        layoutManager = new PageLayoutManager(context);
+        setLayoutManager(layoutManager);
+        setItemAnimator(null);
+        //a cached page would not be bound again to the month of its position
+        setItemViewCacheSize(0);
+        //the view types of the cells are the cell types
+        cellViewPool.setMaxRecycledViews(BaseCellView.REGULAR, CELL_POOL_SIZE);
+        cellViewPool.setMaxRecycledViews(BaseCellView.OUTSIDE_MONTH, CELL_POOL_SIZE);
+        cellViewPool.setMaxRecycledViews(BaseCellView.TODAY, MARKED_CELL_POOL_SIZE);
+        cellViewPool.setMaxRecycledViews(BaseCellView.SELECTED, MARKED_CELL_POOL_SIZE);
+        cellViewPool.setMaxRecycledViews(BaseCellView.SELECTED_TODAY, MARKED_CELL_POOL_SIZE);
+    }
+
+    @Override
+    public void setMonthViewPagerAdapter(MonthViewPagerAdapter monthViewPagerAdapter) {
+        this.monthViewPagerAdapter = monthViewPagerAdapter;
+        setAdapter(pageAdapter);
+        layoutManager.scrollToPositionWithOffset(currentPosition, 0);
+    }
+
+    @Override
+    public int getStartPosition() {
+        return START_POSITION;
+    }
+
+    @Override
+    public void setCurrentPosition(int position, boolean smoothScroll) {
+        if(position == currentPosition) return;
+        stopScroll();
+        if(smoothScroll && Math.abs(position - currentPosition) == 1){
+            smoothScrollToPage(position);
+        }else{
+            //the pages in between are not bound
+            selectPage(position);
+            layoutManager.scrollToPositionWithOffset(position, 0);
+        }
+    }
+
+    @Override
+    public void recreatePages() {
+        //the type of the pages changed
+        pageAdapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public void addOnPageChangeListener(ViewPager.OnPageChangeListener listener) {
+        onPageChangeListeners.add(listener);
+    }
+
+    @Override
+    public void setNumOfRows(int numOfRows) {
+        if(this.numOfRows == numOfRows) return;
+        this.numOfRows = numOfRows;
+        //measured again with the new number of rows
+        pageHeight = 0;
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthSpec, int heightSpec) {
+        super.onMeasure(widthSpec, heightSpec);
+        boolean wrapHeight = MeasureSpec.getMode(heightSpec) == MeasureSpec.AT_MOST;
+        if(getMeasuredWidth() != pageHeightWidth){
+            //the cells are square, the height of the pages follows the width
+            pageHeight = 0;
+        }
+
+        //same height for all the months, like the month view pager
+        if(wrapHeight && pageHeight == 0 && getChildCount() > 0){
+            View firstChild = getChildAt(0);
+            firstChild.measure(MeasureSpec.makeMeasureSpec(getMeasuredWidth(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(getMeasuredHeight(), MeasureSpec.AT_MOST));
+            int height = firstChild.getMeasuredHeight();
+            pageHeight = numOfRows == 6? height : (int)Math.ceil(((float)height*6)/5);
+            pageHeightWidth = getMeasuredWidth();
+        }
+        if(pageHeight != 0){
+            super.onMeasure(widthSpec, MeasureSpec.makeMeasureSpec(pageHeight, MeasureSpec.EXACTLY));
+        }
+    }
+
+    @Override
+    public boolean fling(int velocityX, int velocityY) {
+        int first = layoutManager.findFirstVisibleItemPosition();
+        if(first == NO_POSITION){
+            return super.fling(velocityX, velocityY);
+        }
+        //a fling moves a single page in its direction
+        int target = velocityX > 0 ? first + 1 : first;
+        smoothScrollToPage(Math.max(currentPosition - 1, Math.min(currentPosition + 1, target)));
+        return true;
+    }
+
+    @Override
+    public void onScrollStateChanged(int state) {
+        super.onScrollStateChanged(state);
+        if(state != SCROLL_STATE_IDLE){
+            setPageScrollState(state);
+        }else if(!snapToNearestPage()){
+            setPageScrollState(SCROLL_STATE_IDLE);
+        }
+    }
+
+    @Override
+    public void onScrolled(int dx, int dy) {
+        super.onScrolled(dx, dy);
+        int first = layoutManager.findFirstVisibleItemPosition();
+        View firstView = first == NO_POSITION ? null : layoutManager.findViewByPosition(first);
+        if(firstView == null || getWidth() == 0) return;
+        int offsetPixels = -firstView.getLeft();
+        for(int i = 0; i < onPageChangeListeners.size(); i++){
+            onPageChangeListeners.get(i).onPageScrolled(first, (float) offsetPixels / getWidth(), offsetPixels);
+        }
+    }
+
+    /**
+     * Scroll to the page closest to the current scroll position
+     * @return true if the pager scrolls to the page, false if the page is already in place
+     */
+    private boolean snapToNearestPage(){
+        int first = layoutManager.findFirstVisibleItemPosition();
+        View firstView = first == NO_POSITION ? null : layoutManager.findViewByPosition(first);
+        if(firstView == null) return false;
+        if(firstView.getLeft() == 0){
+            selectPage(first);
+            return false;
+        }
+        smoothScrollToPage(-firstView.getLeft() > getWidth() / 2 ? first + 1 : first);
+        return true;
+    }
+
+    private void smoothScrollToPage(int position){
+        int first = layoutManager.findFirstVisibleItemPosition();
+        View firstView = first == NO_POSITION ? null : layoutManager.findViewByPosition(first);
+        selectPage(position);
+        if(firstView == null){
+            layoutManager.scrollToPositionWithOffset(position, 0);
+            return;
+        }
+        int dx = (position - first) * getWidth() + firstView.getLeft();
+        if(dx != 0){
+            smoothScrollBy(dx, 0);
+        }else{
+            stopScroll();
+        }
+    }
+
+    /**
+     * Notify the listeners of the selected page. The pages whose adapters move to another
+     * month are notified by their adapters
+     */
+    private void selectPage(int position){
+        if(position == currentPosition) return;
+        currentPosition = position;
+        for(int i = 0; i < onPageChangeListeners.size(); i++){
+            onPageChangeListeners.get(i).onPageSelected(position);
+        }
+    }
+
+    private void setPageScrollState(int state){
+        if(pageScrollState == state) return;
+        pageScrollState = state;
+        for(int i = 0; i < onPageChangeListeners.size(); i++){
+            onPageChangeListeners.get(i).onPageScrollStateChanged(state);
+        }
+    }
+
+    /**
+     * Layout manager laying out the next page ahead while the pager scrolls, the adapter of the
+     * next month is bound and its events fetched before the page becomes visible
+     */
+    private class PageLayoutManager extends LinearLayoutManager {
+
+        PageLayoutManager(Context context) {
+            super(context, HORIZONTAL, false);
+        }
+
+        @Override
+        protected int getExtraLayoutSpace(State state) {
+            return getScrollState() == SCROLL_STATE_IDLE ? 0 : getWidth();
+        }
+    }
+
+    private class PageAdapter extends Adapter<PageHolder> {
+
+        @Override
+        public int getItemViewType(int position) {
+            return monthViewPagerAdapter.getDateCellRenderer() != null ? PAGE_RENDERED : PAGE_CELLS;
+        }
+
+        @Override
+        public PageHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new PageHolder(monthViewPagerAdapter.createRecyclerPage(viewType == PAGE_RENDERED, cellViewPool));
+        }
+
+        @Override
+        public void onBindViewHolder(PageHolder holder, int position) {
+            int ringPosition = position % MonthViewPagerAdapter.VIEWS_IN_PAGER;
+            if(holder.ringPosition != -1 && holder.ringPosition != ringPosition){
+                monthViewPagerAdapter.recycleRecyclerPage(holder.page, holder.ringPosition);
+            }
+            holder.ringPosition = ringPosition;
+            monthViewPagerAdapter.bindRecyclerPage(holder.page, ringPosition);
+        }
+
+        @Override
+        public void onViewRecycled(PageHolder holder) {
+            if(holder.ringPosition != -1){
+                monthViewPagerAdapter.recycleRecyclerPage(holder.page, holder.ringPosition);
+                holder.ringPosition = -1;
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return monthViewPagerAdapter == null ? 0 : Integer.MAX_VALUE;
+        }
+    }
+
+    private static class PageHolder extends ViewHolder {
+
+        final MonthPageLayout page;
+        /**
+         * Position of the adapter the page is bound to, -1 if the page is not bound
+         */
+        int ringPosition = -1;
+
+        PageHolder(MonthPageLayout page) {
+            super(page);
+            this.page = page;
+        }
+    }
+}
@@ -4,12 +4,16 @@ import android.content.Context;
 import android.util.AttributeSet;
 import android.view.View;
 
+import com.antonyt.infiniteviewpager.InfinitePagerAdapter;
 import com.antonyt.infiniteviewpager.InfiniteViewPager;
 
 /**
  * @author p-v
  */
-class MonthViewPager extends InfiniteViewPager {
+class MonthViewPager extends InfiniteViewPager implements MonthPager {
+
+    private InfinitePagerAdapter monthInfPagerAdapter;
+    private MonthViewPagerAdapter monthViewPagerAdapter;
 
     private int rowHeight = 0;
     private int numOfRows;
@@ -55,7 +59,33 @@ class MonthViewPager extends InfiniteViewPager {
     }
 
 
-    void setNumOfRows(int numOfRows){
+    @Override
+    public void setMonthViewPagerAdapter(MonthViewPagerAdapter monthViewPagerAdapter){
+        this.monthViewPagerAdapter = monthViewPagerAdapter;
+        monthInfPagerAdapter = new InfinitePagerAdapter(monthViewPagerAdapter);
+        setAdapter(monthInfPagerAdapter);
+    }
+
+    @Override
+    public int getStartPosition(){
+        //Initializing with the offset value
+        return monthInfPagerAdapter.getRealCount() * 100;
+    }
+
+    @Override
+    public void setCurrentPosition(int position, boolean smoothScroll){
+        setCurrentItem(position - getStartPosition(), smoothScroll);
+    }
+
+    @Override
+    public void recreatePages(){
+        monthViewPagerAdapter.setRefreshMonthViewAdapter(true);
+        monthInfPagerAdapter.notifyDataSetChanged();
+        monthViewPagerAdapter.setRefreshMonthViewAdapter(false);
+    }
+
+    @Override
+    public void setNumOfRows(int numOfRows){
         this.numOfRows = numOfRows;
     }
 }
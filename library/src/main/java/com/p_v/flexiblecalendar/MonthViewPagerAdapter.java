@@ -3,14 +3,19 @@ package com.p_v.flexiblecalendar;
 import android.content.Context;
 import android.database.DataSetObserver;
 import android.support.v4.view.PagerAdapter;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.GridView;
 import android.widget.LinearLayout;
 
-import com.p_v.flexiblecalendar.entity.SelectedDateItem;
+import com.p_v.flexiblecalendar.entity.MonthCellStates;
+import com.p_v.flexiblecalendar.entity.PackedDate;
 import com.p_v.flexiblecalendar.view.ICellViewDrawer;
+import com.p_v.flexiblecalendar.view.IDateCellRenderer;
 import com.p_v.flexiblecalendar.view.IDateCellViewDrawer;
 import com.p_v.fliexiblecalendar.R;
 
@@ -29,14 +34,36 @@ public class MonthViewPagerAdapter extends PagerAdapter {
     private List<FlexibleCalendarGridAdapter> dateAdapters;
     private FlexibleCalendarGridAdapter.OnDateCellItemClickListener onDateCellItemClickListener;
     private FlexibleCalendarGridAdapter.MonthEventFetcher monthEventFetcher;
+    private MonthEventLoader monthEventLoader;
+    private EventProviderMonitor eventProviderMonitor;
     private IDateCellViewDrawer cellViewDrawer;
+    /**
+     * Renderer of the canvas rendered pages, null if the pages are grid views of cell views
+     */
+    private IDateCellRenderer dateCellRenderer;
     private int gridViewHorizontalSpacing;
     private int gridViewVerticalSpacing;
     private boolean showDatesOutsideMonth;
     private boolean refreshMonthViewAdpater;
+    /**
+     * Live pages by position
+     */
+    private final SparseArray<MonthPageLayout> pages = new SparseArray<>(VIEWS_IN_PAGER);
+    /**
+     * True while the pager scrolls, applied to the pages created during the scroll
+     */
+    private boolean scrolling;
+    /**
+     * Pool of the page snapshot bitmaps, null if the snapshots are disabled
+     */
+    private PageSnapshotPool snapshotPool;
     private int startDayOfTheWeek;
 	private boolean decorateDatesOutsideMonth;
     private boolean disableAutoDateSelection;
+    /**
+     * Buffer for the year and month computed while sliding the months
+     */
+    private final int[] scratchMonth = new int[2];
 
 	public MonthViewPagerAdapter(Context context, int year, int month,
                                  FlexibleCalendarGridAdapter.OnDateCellItemClickListener onDateCellItemClickListener,
@@ -75,26 +102,114 @@ public class MonthViewPagerAdapter extends PagerAdapter {
         dateAdapters.add(new FlexibleCalendarGridAdapter(context, pYear, pMonth, showDatesOutsideMonth, decorateDatesOutsideMonth, startDayOfTheWeek, disableAutoDateSelection));
     }
 
-    public void refreshDateAdapters(int position, SelectedDateItem selectedDateItem,boolean refreshAll){
+    /**
+     * Slide the window of the months around the month of the adapter at the position. Only the adapters
+     * moving to another month are initialized again, the others keep their cells, events and selection.
+     * After a swipe by a single page only the adapter two pages ahead moves
+     *
+     * @param position position of the displayed adapter
+     * @param selectedDate date selected in the displayed month packed with {@link PackedDate}
+     * @param refreshAll true when the pager jumped to another month, moving the displayed adapter too
+     */
+    public void refreshDateAdapters(int position, int selectedDate, boolean refreshAll){
         FlexibleCalendarGridAdapter currentAdapter = dateAdapters.get(position);
         if(refreshAll){
             //refresh all used when go to current month is called to refresh all the adapters
-            currentAdapter.initialize(selectedDateItem.getYear(),selectedDateItem.getMonth(),startDayOfTheWeek);
+            moveDateAdapter(currentAdapter, PackedDate.getYear(selectedDate), PackedDate.getMonth(selectedDate), false);
         }
         //selecting the first date of the month
-        currentAdapter.setSelectedItem(selectedDateItem,true,false);
+        currentAdapter.setSelectedDate(selectedDate,true,false);
 
-        int[] nextDate = new int[2];
+        int[] nextDate = scratchMonth;
         FlexibleCalendarHelper.nextMonth(currentAdapter.getYear(), currentAdapter.getMonth(), nextDate);
-
-        dateAdapters.get((position + 1) % VIEWS_IN_PAGER).initialize(nextDate[0], nextDate[1],startDayOfTheWeek);
+        moveDateAdapter(dateAdapters.get((position + 1) % VIEWS_IN_PAGER), nextDate[0], nextDate[1], true);
 
         FlexibleCalendarHelper.nextMonth(nextDate[0], nextDate[1], nextDate);
-        dateAdapters.get((position + 2) % VIEWS_IN_PAGER).initialize(nextDate[0], nextDate[1],startDayOfTheWeek);
+        moveDateAdapter(dateAdapters.get((position + 2) % VIEWS_IN_PAGER), nextDate[0], nextDate[1], true);
 
         FlexibleCalendarHelper.previousMonth(currentAdapter.getYear(), currentAdapter.getMonth(), nextDate);
-        dateAdapters.get((position + 3) % VIEWS_IN_PAGER).initialize(nextDate[0], nextDate[1], startDayOfTheWeek);
+        moveDateAdapter(dateAdapters.get((position + 3) % VIEWS_IN_PAGER), nextDate[0], nextDate[1], true);
+
+    }
+
+    /**
+     * Move the adapter at the position to the month, used for displaying a month
+     * further than the adjacent ones on the adjacent page before jumping to it
+     */
+    void moveDateAdapter(int position, int year, int month){
+        moveDateAdapter(dateAdapters.get(position), year, month, true);
+    }
+
+    /**
+     * Initialize the adapter with the month unless it already displays the month
+     * @param notify true for notifying the views of the adapter when the month changes
+     */
+    private void moveDateAdapter(FlexibleCalendarGridAdapter adapter, int year, int month, boolean notify){
+        if(adapter.getYear() == year && adapter.getMonth() == month) return;
+        initializeDateAdapter(adapter, year, month);
+        if(notify){
+            adapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Initialize the adapter with the month and fetch the events for the whole month in a single call
+     */
+    private void initializeDateAdapter(FlexibleCalendarGridAdapter adapter, int year, int month){
+        adapter.initialize(year, month, startDayOfTheWeek);
+        adapter.loadMonthEvents();
+    }
+
+    /**
+     * Fetch the events again for all the months in the pager, decorating only the changed cells
+     */
+    public void reloadMonthEvents(){
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            adapter.reloadMonthEvents();
+        }
+    }
+
+    /**
+     * Fetch the events of the days between the start and end day key again for the months
+     * displaying any of the days. Only the changed cells are decorated again
+     *
+     * @param startDayKey key of the first changed day
+     * @param endDayKey key of the last changed day
+     */
+    public void reloadMonthEvents(int startDayKey, int endDayKey){
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            adapter.reloadMonthEvents(startDayKey, endDayKey);
+        }
+    }
 
+    /**
+     * Update the current date of all the months in the pager, redrawing the cells of today and yesterday
+     */
+    void refreshToday(){
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            adapter.refreshToday();
+        }
+    }
+
+    /**
+     * Fetch the events again for all the months in the pager
+     */
+    public void refreshMonthEvents(){
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            adapter.loadMonthEvents();
+        }
+    }
+
+    /**
+     * @return states of the cells of the month, null if no adapter displays the month
+     */
+    MonthCellStates getMonthCellStates(int year, int month){
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            if(adapter.getYear() == year && adapter.getMonth() == month){
+                return adapter.getMonthCellStates();
+            }
+        }
+        return null;
     }
 
     public FlexibleCalendarGridAdapter getMonthAdapterAtPosition(int position){
@@ -119,18 +234,25 @@ public class MonthViewPagerAdapter extends PagerAdapter {
     @Override
     public Object instantiateItem(ViewGroup container, int position) {
         LayoutInflater inflater = LayoutInflater.from(context);
-        LinearLayout layout = new LinearLayout(context);
-        layout.setOrientation(LinearLayout.VERTICAL);
-        layout.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
-
         FlexibleCalendarGridAdapter adapter = dateAdapters.get(position);
-        adapter.setOnDateClickListener(onDateCellItemClickListener);
-        adapter.setMonthEventFetcher(monthEventFetcher);
-        adapter.setCellViewDrawer(cellViewDrawer);
+        MonthPageLayout layout = createPageLayout();
+        layout.setAdapter(adapter);
+        layout.setSnapshotPool(snapshotPool);
+        layout.setScrolling(scrolling);
+        pages.put(position, layout);
+        prepareDateAdapter(adapter);
+
+        if(dateCellRenderer != null){
+            layout.addView(createMonthGridView(adapter, position));
+            container.addView(layout);
+            return layout;
+        }
 
         GridView view = (GridView)inflater.inflate(R.layout.month_grid_layout,null);
         view.setTag(GRID_TAG_PREFIX+position);
         view.setAdapter(adapter);
+        view.setOnItemClickListener(adapter.getDateClickListener());
+        adapter.setGridView(view);
         view.setVerticalSpacing(gridViewVerticalSpacing);
         view.setHorizontalSpacing(gridViewHorizontalSpacing);
 
@@ -139,20 +261,204 @@ public class MonthViewPagerAdapter extends PagerAdapter {
         return layout;
     }
 
+    private MonthPageLayout createPageLayout(){
+        MonthPageLayout layout = new MonthPageLayout(context);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        return layout;
+    }
+
+    /**
+     * Prepare the adapter for a page. The event providers are already set on all the adapters,
+     * the events of the month are kept and loaded on first bind if not loaded yet
+     */
+    private void prepareDateAdapter(FlexibleCalendarGridAdapter adapter){
+        adapter.setOnDateClickListener(onDateCellItemClickListener);
+        adapter.setCellViewDrawer(cellViewDrawer);
+    }
+
+    /**
+     * Create the page drawing all the cells of the month on a single view
+     */
+    private MonthGridView createMonthGridView(FlexibleCalendarGridAdapter adapter, int position){
+        MonthGridView view = new MonthGridView(context);
+        view.setTag(GRID_TAG_PREFIX+position);
+        view.setPadding(getGridPadding(), getGridPadding(), getGridPadding(), getGridPadding());
+        view.setSpacing(gridViewHorizontalSpacing, gridViewVerticalSpacing);
+        view.setCellRenderer(dateCellRenderer);
+        view.setAdapter(adapter);
+        return view;
+    }
+
+    /**
+     * @return same padding as the month grid layout
+     */
+    private int getGridPadding(){
+        return (int) context.getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * Create an unbound page of the recycler pager. The cells of the page are recycled
+     * through the cell view pool shared by all the pages
+     *
+     * @param rendered true for a page drawing the cells with the date cell renderer
+     * @param cellViewPool pool of the cell views
+     */
+    MonthPageLayout createRecyclerPage(boolean rendered, RecyclerView.RecycledViewPool cellViewPool){
+        MonthPageLayout layout = createPageLayout();
+        if(rendered){
+            MonthGridView view = new MonthGridView(context);
+            view.setPadding(getGridPadding(), getGridPadding(), getGridPadding(), getGridPadding());
+            view.setSpacing(gridViewHorizontalSpacing, gridViewVerticalSpacing);
+            layout.addView(view);
+            return layout;
+        }
+
+        RecyclerView cellsView = new RecyclerView(context);
+        cellsView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        cellsView.setPadding(getGridPadding(), getGridPadding(), getGridPadding(), getGridPadding());
+        cellsView.setLayoutManager(new GridLayoutManager(context, MonthCellAdapter.COLUMNS){
+            @Override
+            public boolean canScrollVertically() {
+                //all the rows are displayed, vertical swipes are left to the parents
+                return false;
+            }
+        });
+        cellsView.setRecycledViewPool(cellViewPool);
+        cellsView.setItemAnimator(null);
+        cellsView.setNestedScrollingEnabled(false);
+        cellsView.addItemDecoration(new MonthCellAdapter.SpacingDecoration(gridViewHorizontalSpacing, gridViewVerticalSpacing));
+        cellsView.setAdapter(new MonthCellAdapter());
+        layout.addView(cellsView);
+        return layout;
+    }
+
+    /**
+     * Bind the page of the recycler pager to the adapter at the position
+     */
+    void bindRecyclerPage(MonthPageLayout page, int position){
+        FlexibleCalendarGridAdapter adapter = dateAdapters.get(position);
+        page.setAdapter(adapter);
+        page.setSnapshotPool(snapshotPool);
+        page.setScrolling(scrolling);
+        pages.put(position, page);
+        prepareDateAdapter(adapter);
+
+        View view = page.getChildAt(0);
+        view.setTag(GRID_TAG_PREFIX+position);
+        if(view instanceof MonthGridView){
+            ((MonthGridView) view).setCellRenderer(dateCellRenderer);
+            ((MonthGridView) view).setAdapter(adapter);
+        }else{
+            RecyclerView cellsView = (RecyclerView) view;
+            adapter.setGridView(cellsView);
+            ((MonthCellAdapter) cellsView.getAdapter()).setGridAdapter(adapter);
+        }
+    }
+
+    /**
+     * Unbind the recycled page of the recycler pager from the adapter at the position
+     */
+    void recycleRecyclerPage(MonthPageLayout page, int position){
+        View view = page.getChildAt(0);
+        view.setTag(null);
+        dateAdapters.get(position).removeGridView(view);
+        if(view instanceof MonthGridView){
+            ((MonthGridView) view).setAdapter(null);
+        }else{
+            ((MonthCellAdapter) ((RecyclerView) view).getAdapter()).setGridAdapter(null);
+        }
+        page.releaseSnapshot();
+        page.setAdapter(null);
+        if(pages.get(position) == page){
+            pages.remove(position);
+        }
+    }
+
     @Override
     public void destroyItem(ViewGroup container, int position, Object object) {
-        container.removeView((LinearLayout) object);
+        MonthPageLayout page = (MonthPageLayout) object;
+        dateAdapters.get(position).removeGridView(page.findViewWithTag(GRID_TAG_PREFIX+position));
+        page.releaseSnapshot();
+        if(pages.get(position) == page){
+            pages.remove(position);
+        }
+        container.removeView(page);
     }
 
-    public void setSelectedItem(SelectedDateItem selectedItem){
+    /**
+     * Display snapshots of the month pages while the pager scrolls instead of drawing their cells.
+     * The snapshots are hardware layers when hardware accelerated, bitmaps from a bounded pool otherwise
+     *
+     * @param enabled true to enable the snapshots
+     */
+    void setPageSnapshotsEnabled(boolean enabled){
+        if(enabled == (snapshotPool != null)) return;
+        PageSnapshotPool previousPool = snapshotPool;
+        snapshotPool = enabled ? new PageSnapshotPool(VIEWS_IN_PAGER) : null;
+        for(int i = 0; i < pages.size(); i++){
+            pages.valueAt(i).setSnapshotPool(snapshotPool);
+            pages.valueAt(i).setScrolling(scrolling);
+        }
+        if(previousPool != null){
+            previousPool.trim();
+        }
+    }
+
+    /**
+     * Switch the pages to their snapshots while the pager scrolls and back to the live cells when idle
+     */
+    void setScrolling(boolean scrolling){
+        this.scrolling = scrolling;
+        for(int i = 0; i < pages.size(); i++){
+            pages.valueAt(i).setScrolling(scrolling);
+        }
+    }
+
+    /**
+     * @param selectedDate selected date packed with {@link PackedDate}
+     */
+    public void setSelectedDate(int selectedDate){
         for(FlexibleCalendarGridAdapter f : dateAdapters){
-            f.setSelectedItem(selectedItem,true,false);
+            f.setSelectedDate(selectedDate,true,false);
         }
         this.notifyDataSetChanged();
     }
 
+    /**
+     * @return today packed with {@link PackedDate}, kept up to date by {@link #refreshToday()}
+     */
+    int getToday(){
+        return dateAdapters.get(0).getToday();
+    }
+
     public void setMonthEventFetcher(FlexibleCalendarGridAdapter.MonthEventFetcher monthEventFetcher){
         this.monthEventFetcher = monthEventFetcher;
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            adapter.setMonthEventFetcher(monthEventFetcher);
+        }
+    }
+
+    /**
+     * Set the loader for fetching the events off the main thread
+     * @param monthEventLoader event loader, null for loading the events synchronously
+     */
+    void setMonthEventLoader(MonthEventLoader monthEventLoader){
+        this.monthEventLoader = monthEventLoader;
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            adapter.setMonthEventLoader(monthEventLoader);
+        }
+    }
+
+    /**
+     * Set the monitor timing the calls to the event providers
+     * @param eventProviderMonitor monitor, null for not timing the calls
+     */
+    void setEventProviderMonitor(EventProviderMonitor eventProviderMonitor){
+        this.eventProviderMonitor = eventProviderMonitor;
+        for(FlexibleCalendarGridAdapter adapter : dateAdapters){
+            adapter.setEventProviderMonitor(eventProviderMonitor);
+        }
     }
 
     public void setCellViewDrawer(IDateCellViewDrawer cellViewDrawer){
@@ -163,6 +469,25 @@ public class MonthViewPagerAdapter extends PagerAdapter {
         return cellViewDrawer;
     }
 
+    /**
+     * Set the renderer drawing the cells of the month pages on a single view
+     * @param dateCellRenderer cell renderer, null for displaying the cells with cell views
+     */
+    void setDateCellRenderer(IDateCellRenderer dateCellRenderer){
+        this.dateCellRenderer = dateCellRenderer;
+    }
+
+    IDateCellRenderer getDateCellRenderer(){
+        return dateCellRenderer;
+    }
+
+    /**
+     * @param refreshMonthViewAdapter true for creating all the pages again on the next data set change
+     */
+    void setRefreshMonthViewAdapter(boolean refreshMonthViewAdapter){
+        this.refreshMonthViewAdpater = refreshMonthViewAdapter;
+    }
+
     public void setSpacing(int horizontalSpacing, int verticalSpacing){
         this.gridViewHorizontalSpacing = horizontalSpacing;
         this.gridViewVerticalSpacing = verticalSpacing;
@@ -204,11 +529,14 @@ public class MonthViewPagerAdapter extends PagerAdapter {
         }
     }
 
-    public void refreshUserSelectedItem(SelectedDateItem selectedDateItem){
+    /**
+     * @param userSelectedDate date selected by the user packed with {@link PackedDate}
+     */
+    public void refreshUserSelectedDate(int userSelectedDate){
         for(FlexibleCalendarGridAdapter adapter : dateAdapters){
-            if(adapter.getUserSelectedItem()!=null
-                    && !selectedDateItem.equals(adapter.getUserSelectedItem())){
-                adapter.setUserSelectedDateItem(selectedDateItem);
+            if(adapter.getUserSelectedDate() != PackedDate.NONE
+                    && userSelectedDate != adapter.getUserSelectedDate()){
+                adapter.setUserSelectedDate(userSelectedDate);
             }
         }
 
@@ -0,0 +1,72 @@
+package com.p_v.flexiblecalendar;
+
+import com.p_v.flexiblecalendar.entity.EventCountsByDay;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+import com.p_v.flexiblecalendar.provider.EventDayIndex;
+
+/**
+ * Events and event counts of the dates displayed by a month page, fetched together
+ * in a single job on the main thread or on the loader thread
+ *
+ * @author p-v
+ */
+class PageEvents {
+
+    /**
+     * Events of the days, fetched for the cells displaying the events
+     */
+    static final int EVENTS = 1;
+    /**
+     * Event counts of the days, fetched for the cells displaying only the event count
+     */
+    static final int COUNTS = 2;
+
+    EventsByDay events;
+    EventCountsByDay counts;
+
+    /**
+     * Fetch the parts of the page events for the range. The day masks of the months are read
+     * once, as part of the job, and the providers are not called if none of the days have events
+     * @param monthEventFetcher fetcher of the events
+     * @param range start year, month, day and end year, month, day
+     * @param parts {@link #EVENTS} and {@link #COUNTS} flags
+     * @param countColors number of colors fetched with the counts
+     * @return fetched events and counts
+     */
+    static PageEvents fetch(FlexibleCalendarGridAdapter.MonthEventFetcher monthEventFetcher,
+                            int[] range, int parts, int countColors){
+        PageEvents pageEvents = new PageEvents();
+        if(!hasEventDays(monthEventFetcher, range)){
+            //nothing to fetch
+            return pageEvents;
+        }
+        if((parts & EVENTS) != 0){
+            pageEvents.events = monthEventFetcher.getEventsForTheRange(range[0], range[1], range[2],
+                    range[3], range[4], range[5]);
+        }
+        if((parts & COUNTS) != 0){
+            pageEvents.counts = monthEventFetcher.getEventCountsForTheRange(countColors, range[0], range[1],
+                    range[2], range[3], range[4], range[5]);
+        }
+        return pageEvents;
+    }
+
+    /**
+     * @return false if the day masks show that none of the days of the range have events
+     */
+    private static boolean hasEventDays(FlexibleCalendarGridAdapter.MonthEventFetcher monthEventFetcher,
+                                        int[] range){
+        int startKey = range[0] * 12 + range[1];
+        int endKey = range[3] * 12 + range[4];
+        for(int key = startKey; key <= endKey; key++){
+            int year = key / 12;
+            int month = key % 12;
+            int fromDay = key == startKey ? range[2] : 1;
+            int toDay = key == endKey ? range[5] : FlexibleCalendarHelper.getDaysInMonth(year, month);
+            if((monthEventFetcher.getEventDayMask(year, month) & EventDayIndex.getDayRangeMask(fromDay, toDay)) != 0){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.p_v.flexiblecalendar;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded pool of the bitmaps the month pages are rasterized into while the pager scrolls.
+ * At most the maximum number of bitmaps exist at any time, a page finding the pool
+ * exhausted is drawn live
+ *
+ * @author p-v
+ */
+class PageSnapshotPool {
+
+    private final int maxBitmaps;
+    private final List<Bitmap> freeBitmaps;
+    private int bitmapCount;
+
+    /**
+     * Canvas reused for drawing into the snapshots
+     */
+    private final Canvas canvas = new Canvas();
+
+    PageSnapshotPool(int maxBitmaps){
+        this.maxBitmaps = maxBitmaps;
+        this.freeBitmaps = new ArrayList<>(maxBitmaps);
+    }
+
+    /**
+     * @return bitmap of the size, null if the pool is exhausted
+     */
+    Bitmap obtain(int width, int height){
+        for(int i = 0; i < freeBitmaps.size(); i++){
+            Bitmap bitmap = freeBitmaps.get(i);
+            if(bitmap.getWidth() == width && bitmap.getHeight() == height){
+                freeBitmaps.remove(i);
+                return bitmap;
+            }
+        }
+        if(bitmapCount == maxBitmaps){
+            if(freeBitmaps.isEmpty()) return null;
+            //free bitmaps of another size are dropped, the page size changed
+            freeBitmaps.remove(freeBitmaps.size() - 1).recycle();
+            bitmapCount--;
+        }
+        bitmapCount++;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    void release(Bitmap bitmap){
+        freeBitmaps.add(bitmap);
+    }
+
+    /**
+     * @return canvas drawing into the bitmap
+     */
+    Canvas getCanvas(Bitmap bitmap){
+        canvas.setBitmap(bitmap);
+        return canvas;
+    }
+
+    /**
+     * Recycle the free bitmaps
+     */
+    void trim(){
+        for(Bitmap bitmap : freeBitmaps){
+            bitmap.recycle();
+        }
+        bitmapCount -= freeBitmaps.size();
+        freeBitmaps.clear();
+    }
+}
@@ -0,0 +1,224 @@
+package com.p_v.flexiblecalendar.entity;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+
+import java.util.Arrays;
+
+/**
+ * Number of events and colors of the first events for the days of a range, the counterpart of
+ * {@link EventsByDay} for the cells only displaying the event count. Only the days having
+ * events are stored, in ascending order of their day keys. Like the events, counts shared
+ * by the cache are frozen
+ *
+ * @author p-v
+ */
+public class EventCountsByDay {
+
+    private final int maxColors;
+    private int size;
+    private int[] keys;
+    private int[] counts;
+    private int[] colors;
+    private boolean frozen;
+
+    /**
+     * @param maxColors number of colors kept for every day
+     */
+    public EventCountsByDay(int maxColors){
+        this.maxColors = maxColors;
+        this.keys = new int[8];
+        this.counts = new int[8];
+        this.colors = new int[8 * maxColors];
+    }
+
+    /**
+     * Create a copy of the counts, which can be modified even if the source is frozen
+     * @param eventCountsByDay source counts
+     */
+    public EventCountsByDay(EventCountsByDay eventCountsByDay){
+        this.maxColors = eventCountsByDay.maxColors;
+        this.size = eventCountsByDay.size;
+        this.keys = eventCountsByDay.keys.clone();
+        this.counts = eventCountsByDay.counts.clone();
+        this.colors = eventCountsByDay.colors.clone();
+    }
+
+    public int getMaxColors(){
+        return maxColors;
+    }
+
+    /**
+     * Ask the provider for the counts of the days of a month having events
+     * @param provider provider of the counts
+     * @param year year
+     * @param month month
+     * @param fromDay first day
+     * @param toDay last day
+     * @param dayMask mask of the days of the month having events, bit 0 for the first day of the month
+     */
+    public void putMonthCounts(FlexibleCalendarView.EventCountDataProvider provider, int year, int month,
+                               int fromDay, int toDay, int dayMask){
+        int[] dayColors = new int[maxColors];
+        for(int day = fromDay; day <= toDay; day++){
+            if((dayMask & (1 << (day - 1))) != 0){
+                Arrays.fill(dayColors, 0);
+                int count = provider.getEventCountForTheDay(year, month, day, dayColors);
+                put(EventsByDay.getDayKey(year, month, day), count, dayColors);
+            }
+        }
+    }
+
+    /**
+     * Set the count of the day. A count of 0 removes the day
+     * @param dayKey key of the day, see {@link EventsByDay#getDayKey(int, int, int)}
+     * @param count number of events of the day
+     * @param dayColors colors of the first events of the day, null for none
+     */
+    public void put(int dayKey, int count, int[] dayColors){
+        checkNotFrozen();
+        int index = Arrays.binarySearch(keys, 0, size, dayKey);
+        if(count <= 0){
+            if(index >= 0){
+                removeAt(index);
+            }
+            return;
+        }
+        if(index < 0){
+            index = ~index;
+            insertAt(index, dayKey);
+        }
+        counts[index] = count;
+        int offset = index * maxColors;
+        for(int i = 0; i < maxColors; i++){
+            colors[offset + i] = dayColors != null && i < dayColors.length ? dayColors[i] : 0;
+        }
+    }
+
+    /**
+     * Copy the counts of the days between the keys, both inclusive, from the other counts
+     */
+    public void putRange(EventCountsByDay eventCountsByDay, int startDayKey, int endDayKey){
+        int[] dayColors = new int[maxColors];
+        for(int i = 0; i < eventCountsByDay.size; i++){
+            int key = eventCountsByDay.keys[i];
+            if(key >= startDayKey && key <= endDayKey){
+                put(key, eventCountsByDay.getColors(key, dayColors), dayColors);
+            }
+        }
+    }
+
+    /**
+     * @return number of events of the day, 0 if the day has no events
+     */
+    public int getCount(int dayKey){
+        int index = Arrays.binarySearch(keys, 0, size, dayKey);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * Get the count and the colors of the day
+     * @param dayKey key of the day
+     * @param dayColors array filled with the colors of the first events, the colors not known are set to 0
+     * @return number of events of the day
+     */
+    public int getColors(int dayKey, int[] dayColors){
+        int index = Arrays.binarySearch(keys, 0, size, dayKey);
+        for(int i = 0; i < dayColors.length; i++){
+            dayColors[i] = index >= 0 && i < maxColors ? colors[index * maxColors + i] : 0;
+        }
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * @return true if the count and the colors of the day are the same in both counts
+     */
+    public static boolean isSameDay(EventCountsByDay first, EventCountsByDay second, int dayKey){
+        if(first == second) return true;
+        if(first == null || second == null || first.maxColors != second.maxColors) return false;
+        int firstIndex = Arrays.binarySearch(first.keys, 0, first.size, dayKey);
+        int secondIndex = Arrays.binarySearch(second.keys, 0, second.size, dayKey);
+        if(firstIndex < 0 || secondIndex < 0) return firstIndex < 0 && secondIndex < 0;
+        if(first.counts[firstIndex] != second.counts[secondIndex]) return false;
+        for(int i = 0; i < first.maxColors; i++){
+            if(first.colors[firstIndex * first.maxColors + i] != second.colors[secondIndex * second.maxColors + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove the counts of all the days between the start and end day key, both inclusive
+     */
+    public void removeRange(int startDayKey, int endDayKey){
+        checkNotFrozen();
+        for(int i = size - 1; i >= 0; i--){
+            if(keys[i] >= startDayKey && keys[i] <= endDayKey){
+                removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Make the counts read only, see {@link EventsByDay#freeze()}
+     * @return this instance
+     */
+    public EventCountsByDay freeze(){
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen(){
+        return frozen;
+    }
+
+    private void checkNotFrozen(){
+        if(frozen){
+            throw new UnsupportedOperationException("The counts are shared, modify a copy instead");
+        }
+    }
+
+    /**
+     * @return number of days with events
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()} - 1
+     * @return the day key at the index
+     */
+    public int keyAt(int index){
+        return keys[index];
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()} - 1
+     * @return the event count at the index
+     */
+    public int countAt(int index){
+        return counts[index];
+    }
+
+    private void insertAt(int index, int dayKey){
+        if(size == keys.length){
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            colors = Arrays.copyOf(colors, capacity * maxColors);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(counts, index, counts, index + 1, size - index);
+        System.arraycopy(colors, index * maxColors, colors, (index + 1) * maxColors, (size - index) * maxColors);
+        keys[index] = dayKey;
+        size++;
+    }
+
+    private void removeAt(int index){
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+        System.arraycopy(colors, (index + 1) * maxColors, colors, index * maxColors, (size - index - 1) * maxColors);
+        size--;
+    }
+}
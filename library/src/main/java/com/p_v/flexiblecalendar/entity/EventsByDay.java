@@ -0,0 +1,166 @@
+package com.p_v.flexiblecalendar.entity;
+
+import android.util.SparseArray;
+
+import java.util.List;
+
+/**
+ * Events bucketed by day for a range of dates. Instances shared by the caches and the providers
+ * are frozen, copy them with {@link #EventsByDay(EventsByDay)} before modifying them
+ *
+ * @author p-v
+ */
+public class EventsByDay {
+
+    private final SparseArray<List<? extends Event>> dayEvents;
+    private boolean frozen;
+
+    public EventsByDay(){
+        dayEvents = new SparseArray<>();
+    }
+
+    public EventsByDay(int initialCapacity){
+        dayEvents = new SparseArray<>(initialCapacity);
+    }
+
+    /**
+     * Create a copy of the events, which can be modified even if the source is frozen.
+     * The event lists are shared with the source
+     * @param eventsByDay source events
+     */
+    public EventsByDay(EventsByDay eventsByDay){
+        dayEvents = eventsByDay.dayEvents.clone();
+    }
+
+    /**
+     * Set the events for the day. Passing null or an empty list removes the day
+     * @param year year
+     * @param month month
+     * @param day day
+     * @param events events for the day
+     */
+    public void put(int year, int month, int day, List<? extends Event> events){
+        put(getDayKey(year, month, day), events);
+    }
+
+    /**
+     * @return events for the day, null if there are no events for the day
+     */
+    public List<? extends Event> get(int year, int month, int day){
+        return dayEvents.get(getDayKey(year, month, day));
+    }
+
+    /**
+     * Set the events for the day key
+     * @param dayKey key of the day, see {@link #getDayKey(int, int, int)}
+     * @param events events for the day
+     */
+    public void put(int dayKey, List<? extends Event> events){
+        checkNotFrozen();
+        if(events == null || events.isEmpty()){
+            dayEvents.remove(dayKey);
+        }else{
+            dayEvents.put(dayKey, events);
+        }
+    }
+
+    /**
+     * @param dayKey key of the day, see {@link #getDayKey(int, int, int)}
+     * @return events for the day, null if there are no events for the day
+     */
+    public List<? extends Event> get(int dayKey){
+        return dayEvents.get(dayKey);
+    }
+
+    public void remove(int year, int month, int day){
+        checkNotFrozen();
+        dayEvents.remove(getDayKey(year, month, day));
+    }
+
+    /**
+     * Remove the events of all the days between the start and end day key, both inclusive
+     * @param startDayKey key of the start day
+     * @param endDayKey key of the end day
+     */
+    public void removeRange(int startDayKey, int endDayKey){
+        checkNotFrozen();
+        for(int i = dayEvents.size() - 1; i >= 0; i--){
+            int key = dayEvents.keyAt(i);
+            if(key >= startDayKey && key <= endDayKey){
+                dayEvents.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * @return number of days with events
+     */
+    public int size(){
+        return dayEvents.size();
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()} - 1
+     * @return the day key at the index. Keys are in ascending order of the date
+     */
+    public int keyAt(int index){
+        return dayEvents.keyAt(index);
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()} - 1
+     * @return the events at the index
+     */
+    public List<? extends Event> valueAt(int index){
+        return dayEvents.valueAt(index);
+    }
+
+    public void clear(){
+        checkNotFrozen();
+        dayEvents.clear();
+    }
+
+    /**
+     * Make the events read only, done before sharing them. The methods modifying
+     * the events throw an {@link UnsupportedOperationException} afterwards
+     * @return this instance
+     */
+    public EventsByDay freeze(){
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * @return true if the events are shared and can not be modified
+     */
+    public boolean isFrozen(){
+        return frozen;
+    }
+
+    private void checkNotFrozen(){
+        if(frozen){
+            throw new UnsupportedOperationException("The events are shared, modify a copy instead");
+        }
+    }
+
+    /**
+     * Key used for bucketing a day, in the yyyymmdd form with the month
+     * stored as 1 to 12
+     */
+    public static int getDayKey(int year, int month, int day){
+        return year * 10000 + (month + 1) * 100 + day;
+    }
+
+    public static int getYear(int dayKey){
+        return dayKey / 10000;
+    }
+
+    public static int getMonth(int dayKey){
+        return (dayKey / 100) % 100 - 1;
+    }
+
+    public static int getDay(int dayKey){
+        return dayKey % 100;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.p_v.flexiblecalendar.entity;
+
+import android.util.MonthDisplayHelper;
+
+import com.p_v.flexiblecalendar.view.BaseCellView;
+
+/**
+ * Cell types and days of the 42 cells of a month page, computed once when the month or the
+ * selection changes instead of on every bind. The states are updated in place, read them
+ * while binding the cells of the month
+ *
+ * @author p-v
+ */
+public class MonthCellStates {
+
+    public static final int CELL_COUNT = 42;
+
+    private static final int COLUMNS = 7;
+
+    private final byte[] cellTypes = new byte[CELL_COUNT];
+    private final byte[] days = new byte[CELL_COUNT];
+    private int year;
+    private int month;
+
+    /**
+     * Compute the states of all the cells of the month
+     * @param monthDisplayHelper helper of the month
+     * @param today day of the month being today, 0 if today is in another month
+     * @param selectedDay selected day of the month, 0 if the selected date is in another month
+     */
+    public void update(MonthDisplayHelper monthDisplayHelper, int today, int selectedDay){
+        year = monthDisplayHelper.getYear();
+        month = monthDisplayHelper.getMonth();
+        for(int position = 0; position < CELL_COUNT; position++){
+            int row = position / COLUMNS;
+            int col = position % COLUMNS;
+            int day = monthDisplayHelper.getDayAt(row, col);
+            int cellType;
+            if(!monthDisplayHelper.isWithinCurrentMonth(row, col)){
+                cellType = BaseCellView.OUTSIDE_MONTH;
+            }else if(day == today){
+                cellType = day == selectedDay ? BaseCellView.SELECTED_TODAY : BaseCellView.TODAY;
+            }else{
+                cellType = day == selectedDay ? BaseCellView.SELECTED : BaseCellView.REGULAR;
+            }
+            days[position] = (byte) day;
+            cellTypes[position] = (byte) cellType;
+        }
+    }
+
+    public int getYear(){
+        return year;
+    }
+
+    public int getMonth(){
+        return month;
+    }
+
+    @BaseCellView.CellType
+    public int getCellType(int position){
+        return cellTypes[position];
+    }
+
+    /**
+     * @return day displayed by the cell, the day of the previous or next month for the cells outside the month
+     */
+    public int getDay(int position){
+        return days[position];
+    }
+
+    /**
+     * @return true if the cell displays a day of the month
+     */
+    public boolean isWithinMonth(int position){
+        return cellTypes[position] != BaseCellView.OUTSIDE_MONTH;
+    }
+}
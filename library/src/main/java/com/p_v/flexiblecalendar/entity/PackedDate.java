@@ -0,0 +1,111 @@
+package com.p_v.flexiblecalendar.entity;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+
+/**
+ * Date packed in an int in the yyyymmdd form, with the month stored as 1 to 12 like the day keys
+ * of {@link EventsByDay}. The arithmetic works on the packed value without creating objects or a
+ * {@link java.util.Calendar}. The months taken and returned are 0 based like everywhere in the calendar
+ *
+ * @author p-v
+ */
+public final class PackedDate {
+
+    /**
+     * Value for no date
+     */
+    public static final int NONE = 0;
+
+    private PackedDate(){
+    }
+
+    public static int of(int year, int month, int day){
+        return EventsByDay.getDayKey(year, month, day);
+    }
+
+    /**
+     * @return packed date of the item, {@link #NONE} if the item is null
+     */
+    public static int of(SelectedDateItem selectedDateItem){
+        return selectedDateItem == null ? NONE
+                : of(selectedDateItem.getYear(), selectedDateItem.getMonth(), selectedDateItem.getDay());
+    }
+
+    public static int getYear(int packedDate){
+        return EventsByDay.getYear(packedDate);
+    }
+
+    public static int getMonth(int packedDate){
+        return EventsByDay.getMonth(packedDate);
+    }
+
+    public static int getDay(int packedDate){
+        return EventsByDay.getDay(packedDate);
+    }
+
+    /**
+     * @return number of days since 1970-01-01
+     */
+    public static int toEpochDay(int packedDate){
+        return FlexibleCalendarHelper.toEpochDay(getYear(packedDate), getMonth(packedDate), getDay(packedDate));
+    }
+
+    /**
+     * @param epochDay number of days since 1970-01-01
+     * @return packed date of the epoch day
+     */
+    public static int ofEpochDay(int epochDay){
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int m = mp < 10 ? mp + 3 : mp - 9;
+        return of(yearOfEra + era * 400 + (m <= 2 ? 1 : 0), m - 1, dayOfYear - (153 * mp + 2) / 5 + 1);
+    }
+
+    /**
+     * @param days number of days to add, negative for going back
+     */
+    public static int plusDays(int packedDate, int days){
+        int day = getDay(packedDate) + days;
+        if(day >= 1 && day <= 28){
+            //same month
+            return packedDate + days;
+        }
+        return ofEpochDay(toEpochDay(packedDate) + days);
+    }
+
+    /**
+     * @param months number of months to add, negative for going back. The day is moved to the
+     *               last day of the month if the month is shorter
+     */
+    public static int plusMonths(int packedDate, int months){
+        int monthKey = getYear(packedDate) * 12 + getMonth(packedDate) + months;
+        int year = monthKey >= 0 ? monthKey / 12 : (monthKey - 11) / 12;
+        int month = monthKey - year * 12;
+        return of(year, month, Math.min(getDay(packedDate), FlexibleCalendarHelper.getDaysInMonth(year, month)));
+    }
+
+    /**
+     * @return day of the week where 1 is SUNDAY, 2 is MONDAY ... 7 is SATURDAY
+     */
+    public static int getDayOfWeek(int packedDate){
+        return FlexibleCalendarHelper.getDayOfWeek(toEpochDay(packedDate));
+    }
+
+    /**
+     * @return number of days in the month of the date
+     */
+    public static int getMonthLength(int packedDate){
+        return FlexibleCalendarHelper.getDaysInMonth(getYear(packedDate), getMonth(packedDate));
+    }
+
+    /**
+     * @return true if both dates are in the same month
+     */
+    public static boolean isSameMonth(int packedDate, int otherPackedDate){
+        return packedDate / 100 == otherPackedDate / 100;
+    }
+}
@@ -2,7 +2,9 @@ package com.p_v.flexiblecalendar.exception;
 
 /**
  * @author p-v
+ * @deprecated dates at any distance can be selected, the exception is no longer thrown
  */
+@Deprecated
 public class HighValueException extends RuntimeException{
 
     public HighValueException(){
@@ -0,0 +1,414 @@
+package com.p_v.flexiblecalendar.provider;
+
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.v4.util.LongSparseArray;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Event provider backed by a database {@link Cursor}. Instead of a query for every day,
+ * a single query fetches the events of all the months missing for the requested range.
+ * The rows are read into a reused {@link EventRow} and bucketed by day into compact
+ * per month arrays, which serve the per day lookups afterwards. The rows with the same id
+ * and color share a single {@link CursorEvent}, within a query and with the previous
+ * query of an invalidated month.
+ * <p>
+ * The provider is an {@link FlexibleCalendarView.EventChangeSource}. Register the observer from
+ * {@link #createContentObserver(Handler)} and set the provider with
+ * {@link FlexibleCalendarView#setEventChangeSource(FlexibleCalendarView.EventChangeSource)}
+ * so that only the changed month is queried again when the content changes.
+ *
+ * @author p-v
+ */
+public class CursorEventProvider implements FlexibleCalendarView.EventDataProvider,
+        FlexibleCalendarView.EventRangeDataProvider, FlexibleCalendarView.EventChangeSource {
+
+    private static final int DEFAULT_CACHED_MONTHS = 6;
+    private static final int DEFAULT_ROW_CAPACITY = 16;
+
+    /**
+     * Queries the events and reads the rows of the cursor
+     */
+    public interface QueryHandler {
+        /**
+         * Query the events of the days between the start and the end date, both inclusive.
+         * Called off the main thread when the events are loaded asynchronously
+         *
+         * @return cursor with the events, null if there are no events
+         */
+        Cursor query(int startYear, int startMonth, int startDay, int endYear, int endMonth, int endDay);
+
+        /**
+         * Read the current row of the cursor. The row is reused for all the rows of the cursor
+         *
+         * @param cursor cursor positioned on the row
+         * @param row row to be filled
+         */
+        void readRow(Cursor cursor, EventRow row);
+
+        /**
+         * Find the month changed by a content change
+         *
+         * @param uri uri of the changed content, null if unknown
+         * @param yearMonth array of size 2 for holding the year and the month
+         * @return false if the changed month is unknown, all the months are queried again
+         */
+        boolean getChangedMonth(Uri uri, int[] yearMonth);
+    }
+
+    /**
+     * Buffer for reading a row of the cursor
+     */
+    public static class EventRow {
+        public int year;
+        public int month;
+        public int day;
+        public int color;
+        public long id;
+    }
+
+    /**
+     * Event read from the cursor
+     */
+    public static class CursorEvent implements Event {
+
+        private final long id;
+        private final int color;
+
+        public CursorEvent(long id, int color){
+            this.id = id;
+            this.color = color;
+        }
+
+        public long getId(){
+            return id;
+        }
+
+        @Override
+        public int getColor() {
+            return color;
+        }
+    }
+
+    private final QueryHandler queryHandler;
+    private final int cachedMonths;
+    private final LruCache<Integer, MonthBucket> months;
+    /**
+     * Buckets of the invalidated months, their events are reused by the next query of the months
+     */
+    private final SparseArray<MonthBucket> staleMonths = new SparseArray<>();
+    private final List<FlexibleCalendarView.EventChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Incremented on every invalidation, used to drop the results of queries
+     * which were running while the months got invalidated
+     */
+    private int generation;
+
+    public CursorEventProvider(QueryHandler queryHandler){
+        this(queryHandler, DEFAULT_CACHED_MONTHS);
+    }
+
+    /**
+     * @param queryHandler handler querying the events
+     * @param cachedMonths maximum number of months kept in memory
+     */
+    public CursorEventProvider(QueryHandler queryHandler, int cachedMonths){
+        this.queryHandler = queryHandler;
+        this.cachedMonths = cachedMonths;
+        this.months = new LruCache<>(cachedMonths);
+    }
+
+    @Override
+    public List<? extends Event> getEventsForTheDay(int year, int month, int day) {
+        int key = getMonthKey(year, month);
+        return getMonths(key, key)[0].getEventsByDay(year, month).get(year, month, day);
+    }
+
+    @Override
+    public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                            int endYear, int endMonth, int endDay) {
+        int startKey = getMonthKey(startYear, startMonth);
+        int endKey = getMonthKey(endYear, endMonth);
+        MonthBucket[] buckets = getMonths(startKey, endKey);
+        if(startKey == endKey && startDay == 1
+                && endDay == FlexibleCalendarHelper.getDaysInMonth(endYear, endMonth)){
+            return buckets[0].getEventsByDay(startYear, startMonth);
+        }
+
+        EventsByDay result = new EventsByDay();
+        for(int key = startKey; key <= endKey; key++){
+            int year = key / 12;
+            int month = key % 12;
+            EventsByDay monthEvents = buckets[key - startKey].getEventsByDay(year, month);
+            int fromDay = key == startKey ? startDay : 1;
+            int toDay = key == endKey ? endDay : FlexibleCalendarHelper.getDaysInMonth(year, month);
+            for(int i = 0; i < monthEvents.size(); i++){
+                int day = EventsByDay.getDay(monthEvents.keyAt(i));
+                if(day >= fromDay && day <= toDay){
+                    result.put(monthEvents.keyAt(i), monthEvents.valueAt(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop the events of the month, the month is queried again on the next request
+     */
+    public synchronized void invalidateMonth(int year, int month){
+        generation++;
+        int key = getMonthKey(year, month);
+        MonthBucket bucket = months.remove(key);
+        if(bucket != null){
+            if(staleMonths.size() >= cachedMonths){
+                staleMonths.clear();
+            }
+            staleMonths.put(key, bucket);
+        }
+    }
+
+    /**
+     * Drop the events of all the months
+     */
+    public synchronized void invalidateAll(){
+        generation++;
+        staleMonths.clear();
+        for(Map.Entry<Integer, MonthBucket> entry : months.snapshot().entrySet()){
+            staleMonths.put(entry.getKey(), entry.getValue());
+        }
+        months.evictAll();
+    }
+
+    /**
+     * Create an observer invalidating the changed month and notifying the listeners.
+     * The observer has to be registered with the content resolver by the caller
+     *
+     * @param handler handler the observer is called on, null for the binder thread
+     * @return the observer
+     */
+    public ContentObserver createContentObserver(Handler handler){
+        return new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                onContentChanged(uri);
+            }
+        };
+    }
+
+    @Override
+    public void addEventChangeListener(FlexibleCalendarView.EventChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeEventChangeListener(FlexibleCalendarView.EventChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void onContentChanged(Uri uri){
+        int[] yearMonth = new int[2];
+        if(queryHandler.getChangedMonth(uri, yearMonth)){
+            int year = yearMonth[0];
+            int month = yearMonth[1];
+            invalidateMonth(year, month);
+            int daysInMonth = FlexibleCalendarHelper.getDaysInMonth(year, month);
+            for(FlexibleCalendarView.EventChangeListener listener : listeners){
+                listener.onEventsChanged(year, month, 1, year, month, daysInMonth);
+            }
+        }else{
+            invalidateAll();
+            for(FlexibleCalendarView.EventChangeListener listener : listeners){
+                listener.onAllEventsChanged();
+            }
+        }
+    }
+
+    /**
+     * Get the buckets of the months, querying all the missing months with a single query
+     */
+    private MonthBucket[] getMonths(int startKey, int endKey){
+        MonthBucket[] buckets = new MonthBucket[endKey - startKey + 1];
+        int firstMissing = -1;
+        int lastMissing = -1;
+        int queryGeneration;
+        MonthBucket[] staleBuckets;
+        synchronized (this){
+            for(int key = startKey; key <= endKey; key++){
+                buckets[key - startKey] = months.get(key);
+                if(buckets[key - startKey] == null){
+                    if(firstMissing == -1) firstMissing = key;
+                    lastMissing = key;
+                }
+            }
+            queryGeneration = generation;
+            if(firstMissing == -1){
+                return buckets;
+            }
+            staleBuckets = new MonthBucket[lastMissing - firstMissing + 1];
+            for(int key = firstMissing; key <= lastMissing; key++){
+                staleBuckets[key - firstMissing] = staleMonths.get(key);
+                staleMonths.remove(key);
+            }
+        }
+
+        // querying without holding the lock so that the lookups of the loaded months never wait
+        MonthBucket[] loaded = query(firstMissing, lastMissing, staleBuckets);
+        synchronized (this){
+            for(int key = firstMissing; key <= lastMissing; key++){
+                if(buckets[key - startKey] == null){
+                    buckets[key - startKey] = loaded[key - firstMissing];
+                    if(queryGeneration == generation){
+                        months.put(key, loaded[key - firstMissing]);
+                    }
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Query the months and bucket the rows by day with a counting sort
+     * @param staleBuckets previous buckets of the months, null for the months never queried,
+     *                     whose events are reused for the rows with the same id and color
+     */
+    private MonthBucket[] query(int firstKey, int lastKey, MonthBucket[] staleBuckets){
+        int lastDay = FlexibleCalendarHelper.getDaysInMonth(lastKey / 12, lastKey % 12);
+        int firstEpochDay = FlexibleCalendarHelper.toEpochDay(firstKey / 12, firstKey % 12, 1);
+        int lastEpochDay = FlexibleCalendarHelper.toEpochDay(lastKey / 12, lastKey % 12, lastDay);
+        int dayCount = lastEpochDay - firstEpochDay + 1;
+
+        // dayStarts[i + 1] counts the events of the day i, turned into the start of the day i + 1 below
+        int[] dayStarts = new int[dayCount + 1];
+        int[] rowDays;
+        CursorEvent[] rowEvents;
+        int rowCount = 0;
+        Cursor cursor = queryHandler.query(firstKey / 12, firstKey % 12, 1, lastKey / 12, lastKey % 12, lastDay);
+        if(cursor == null){
+            rowDays = new int[0];
+            rowEvents = new CursorEvent[0];
+        }else{
+            try{
+                int capacity = Math.max(cursor.getCount(), DEFAULT_ROW_CAPACITY);
+                rowDays = new int[capacity];
+                rowEvents = new CursorEvent[capacity];
+                EventRow row = new EventRow();
+                LongSparseArray<CursorEvent> eventsById = getEventsById(staleBuckets);
+                while(cursor.moveToNext()){
+                    queryHandler.readRow(cursor, row);
+                    int dayIndex = FlexibleCalendarHelper.toEpochDay(row.year, row.month, row.day) - firstEpochDay;
+                    if(dayIndex < 0 || dayIndex >= dayCount) continue;
+                    if(rowCount == rowDays.length){
+                        rowDays = Arrays.copyOf(rowDays, rowCount * 2);
+                        rowEvents = Arrays.copyOf(rowEvents, rowCount * 2);
+                    }
+                    rowDays[rowCount] = dayIndex;
+                    CursorEvent event = eventsById.get(row.id);
+                    if(event == null || event.getColor() != row.color){
+                        event = new CursorEvent(row.id, row.color);
+                        eventsById.put(row.id, event);
+                    }
+                    rowEvents[rowCount] = event;
+                    dayStarts[dayIndex + 1]++;
+                    rowCount++;
+                }
+            }finally {
+                cursor.close();
+            }
+        }
+
+        for(int i = 1; i <= dayCount; i++){
+            dayStarts[i] += dayStarts[i - 1];
+        }
+        CursorEvent[] sortedEvents = new CursorEvent[rowCount];
+        int[] next = Arrays.copyOf(dayStarts, dayCount);
+        for(int i = 0; i < rowCount; i++){
+            sortedEvents[next[rowDays[i]]++] = rowEvents[i];
+        }
+
+        MonthBucket[] buckets = new MonthBucket[lastKey - firstKey + 1];
+        int monthStartDay = 0;
+        for(int key = firstKey; key <= lastKey; key++){
+            int daysInMonth = FlexibleCalendarHelper.getDaysInMonth(key / 12, key % 12);
+            int firstEvent = dayStarts[monthStartDay];
+            int[] monthDayStarts = new int[daysInMonth + 1];
+            for(int d = 0; d <= daysInMonth; d++){
+                monthDayStarts[d] = dayStarts[monthStartDay + d] - firstEvent;
+            }
+            buckets[key - firstKey] = new MonthBucket(monthDayStarts,
+                    Arrays.copyOfRange(sortedEvents, firstEvent, dayStarts[monthStartDay + daysInMonth]));
+            monthStartDay += daysInMonth;
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the events of the buckets by id
+     */
+    private static LongSparseArray<CursorEvent> getEventsById(MonthBucket[] buckets){
+        LongSparseArray<CursorEvent> eventsById = new LongSparseArray<>();
+        for(MonthBucket bucket : buckets){
+            if(bucket == null) continue;
+            for(CursorEvent event : bucket.events){
+                eventsById.put(event.getId(), event);
+            }
+        }
+        return eventsById;
+    }
+
+    private static int getMonthKey(int year, int month){
+        return year * 12 + month;
+    }
+
+    /**
+     * Events of a month sorted by day
+     */
+    private static class MonthBucket {
+
+        /**
+         * Events of the day d are at the indexes dayStarts[d - 1] to dayStarts[d] - 1
+         */
+        final int[] dayStarts;
+        final CursorEvent[] events;
+        private EventsByDay eventsByDay;
+
+        MonthBucket(int[] dayStarts, CursorEvent[] events){
+            this.dayStarts = dayStarts;
+            this.events = events;
+        }
+
+        synchronized EventsByDay getEventsByDay(int year, int month){
+            if(eventsByDay == null){
+                eventsByDay = new EventsByDay();
+                List<CursorEvent> eventList = Collections.unmodifiableList(Arrays.asList(events));
+                for(int day = 1; day < dayStarts.length; day++){
+                    if(dayStarts[day] > dayStarts[day - 1]){
+                        eventsByDay.put(year, month, day, eventList.subList(dayStarts[day - 1], dayStarts[day]));
+                    }
+                }
+                //returned as is for the whole month
+                eventsByDay.freeze();
+            }
+            return eventsByDay;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.p_v.flexiblecalendar.provider;
+
+import android.util.SparseIntArray;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+
+/**
+ * Index of the days having events, keeping a single 31 bit mask for every month.
+ * Set with {@link FlexibleCalendarView#setEventDayMaskProvider(FlexibleCalendarView.EventDayMaskProvider)}
+ * so that the days and the months without events are skipped without asking the providers.
+ * <p>
+ * The index has to be kept in sync with the events: mark the days when events are added
+ * and clear a day once its last event is removed. Months missing in the index have no events.
+ *
+ * @author p-v
+ */
+public class EventDayIndex implements FlexibleCalendarView.EventDayMaskProvider {
+
+    private final SparseIntArray masks = new SparseIntArray();
+
+    /**
+     * Mark the day as having events
+     */
+    public synchronized void addDay(int year, int month, int day){
+        int key = getMonthKey(year, month);
+        masks.put(key, masks.get(key) | (1 << (day - 1)));
+    }
+
+    /**
+     * Mark all the days between the start and the end date, both inclusive, as having events
+     */
+    public synchronized void addRange(int startYear, int startMonth, int startDay,
+                                      int endYear, int endMonth, int endDay){
+        int startKey = getMonthKey(startYear, startMonth);
+        int endKey = getMonthKey(endYear, endMonth);
+        for(int key = startKey; key <= endKey; key++){
+            int fromDay = key == startKey ? startDay : 1;
+            int toDay = key == endKey ? endDay : FlexibleCalendarHelper.getDaysInMonth(key / 12, key % 12);
+            masks.put(key, masks.get(key) | getDayRangeMask(fromDay, toDay));
+        }
+    }
+
+    /**
+     * Mark the day as not having any event
+     */
+    public synchronized void removeDay(int year, int month, int day){
+        int key = getMonthKey(year, month);
+        int mask = masks.get(key) & ~(1 << (day - 1));
+        if(mask == 0){
+            masks.delete(key);
+        }else{
+            masks.put(key, mask);
+        }
+    }
+
+    /**
+     * Replace the days of the month having events
+     * @param mask mask of the days having events, bit 0 for the first day of the month
+     */
+    public synchronized void setMonthMask(int year, int month, int mask){
+        if(mask == 0){
+            masks.delete(getMonthKey(year, month));
+        }else{
+            masks.put(getMonthKey(year, month), mask);
+        }
+    }
+
+    public synchronized boolean hasEvents(int year, int month, int day){
+        return (masks.get(getMonthKey(year, month)) & (1 << (day - 1))) != 0;
+    }
+
+    public synchronized void clear(){
+        masks.clear();
+    }
+
+    @Override
+    public synchronized int getEventDayMask(int year, int month) {
+        return masks.get(getMonthKey(year, month));
+    }
+
+    /**
+     * @param fromDay first day
+     * @param toDay last day, inclusive
+     * @return mask with the bits of the days between the first and the last day set
+     */
+    public static int getDayRangeMask(int fromDay, int toDay){
+        if(fromDay > toDay) return 0;
+        return (int) (((1L << toDay) - 1) & ~((1L << (fromDay - 1)) - 1));
+    }
+
+    private static int getMonthKey(int year, int month){
+        return year * 12 + month;
+    }
+}
@@ -0,0 +1,381 @@
+package com.p_v.flexiblecalendar.provider;
+
+import android.util.SparseArray;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Read only snapshot of the decorations of the days stored in a compact binary file,
+ * used for decorating the calendar on cold start before the live provider is ready.
+ * <p>
+ * The file holds a header followed by fixed size records sorted by day. Every record
+ * holds the epoch day, the number of events of the day and the color resources of the
+ * first events. The file is memory mapped and the records are read straight from the
+ * mapping, so opening the snapshot does not parse anything, and the events of a day are
+ * a view over its record, created once per day. A file whose length does not match the
+ * number of days recorded in the header is not opened.
+ * <p>
+ * Color resource ids can change between builds of the app, so the header holds the app version
+ * the snapshot was written by and a snapshot of another version is not opened.
+ * <p>
+ * Snapshots are written with a {@link Writer} into a temporary file which replaces the
+ * snapshot file only once it is complete, so readers never see a partially written snapshot.
+ *
+ * @author p-v
+ */
+public class EventSnapshot implements FlexibleCalendarView.EventRangeDataProvider,
+        FlexibleCalendarView.EventCountDataProvider {
+
+    private static final int MAGIC = 0x46434553; // FCES
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 20;
+    /**
+     * Offset of the number of days in the header, written once the snapshot is complete
+     */
+    private static final int DAY_COUNT_OFFSET = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int maxColors;
+    private final int recordSize;
+    private final int recordCount;
+
+    /**
+     * Events created for the colors, shared by all the days
+     */
+    private final SparseArray<Event> colorEvents = new SparseArray<>();
+    /**
+     * Views over the records by index, created on first use and shared by all the queries.
+     * The views are immutable, a view created twice by concurrent queries is harmless
+     */
+    private final DayEvents[] dayViews;
+
+    private EventSnapshot(MappedByteBuffer buffer, int appVersion) throws IOException{
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+            throw new IOException("Not an event snapshot");
+        }
+        if(buffer.getInt(8) != appVersion){
+            throw new IOException("Event snapshot written by another app version");
+        }
+        this.buffer = buffer;
+        this.maxColors = buffer.getInt(12);
+        if(maxColors < 1){
+            throw new IOException("Invalid event snapshot");
+        }
+        this.recordSize = 8 + 4 * maxColors;
+        this.recordCount = buffer.getInt(DAY_COUNT_OFFSET);
+        if(recordCount < 0 || buffer.capacity() != HEADER_SIZE + (long) recordCount * recordSize){
+            throw new IOException("Truncated event snapshot");
+        }
+        this.dayViews = new DayEvents[recordCount];
+    }
+
+    /**
+     * Map the snapshot file
+     * @param file snapshot file
+     * @param appVersion version of the app, like the version code, the snapshot must have been written with
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot, is truncated
+     * or was written by another app version
+     */
+    public static EventSnapshot open(File file, int appVersion) throws IOException{
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try{
+            FileChannel channel = randomAccessFile.getChannel();
+            // the mapping stays valid after the file is closed or replaced
+            return new EventSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), appVersion);
+        }finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Write the snapshot of the months fetched from the provider. The months are fetched and
+     * written one at a time. Must be called off the main thread
+     *
+     * @param file snapshot file, replaced once the snapshot is written
+     * @param provider provider of the events
+     * @param startYear year of the first month
+     * @param startMonth first month
+     * @param months number of months
+     * @param maxColors maximum number of colors stored for a day, at least 1
+     * @param appVersion version of the app, like the version code, the color resources belong to
+     * @throws IOException if the snapshot cannot be written, the existing snapshot is kept
+     */
+    public static void write(File file, FlexibleCalendarView.EventRangeDataProvider provider,
+                             int startYear, int startMonth, int months, int maxColors, int appVersion) throws IOException{
+        Writer writer = new Writer(file, maxColors, appVersion);
+        try{
+            int monthKey = startYear * 12 + startMonth;
+            for(int i = 0; i < months; i++, monthKey++){
+                int year = monthKey / 12;
+                int month = monthKey % 12;
+                EventsByDay events = provider.getEventsForTheRange(year, month, 1,
+                        year, month, FlexibleCalendarHelper.getDaysInMonth(year, month));
+                if(events != null){
+                    writer.addEvents(events);
+                }
+            }
+            writer.commit();
+        }finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return number of days in the snapshot
+     */
+    public int getDayCount(){
+        return recordCount;
+    }
+
+    /**
+     * @return maximum number of colors stored for a day
+     */
+    public int getMaxColors(){
+        return maxColors;
+    }
+
+    @Override
+    public int getEventCountForTheDay(int year, int month, int day, int[] colors) {
+        int epochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+        int index = lowerBound(epochDay);
+        if(index == recordCount || buffer.getInt(offsetOf(index)) != epochDay){
+            return 0;
+        }
+        int offset = offsetOf(index);
+        int count = buffer.getInt(offset + 4);
+        for(int i = 0, n = Math.min(Math.min(count, maxColors), colors.length); i < n; i++){
+            colors[i] = buffer.getInt(offset + 8 + 4 * i);
+        }
+        return count;
+    }
+
+    /**
+     * The events of a day are a read only view over the record of the day. Days with more
+     * events than the stored colors repeat the last stored color
+     */
+    @Override
+    public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                            int endYear, int endMonth, int endDay) {
+        int rangeStart = FlexibleCalendarHelper.toEpochDay(startYear, startMonth, startDay);
+        int rangeEnd = FlexibleCalendarHelper.toEpochDay(endYear, endMonth, endDay);
+        int index = lowerBound(rangeStart);
+        EventsByDay eventsByDay = new EventsByDay(Math.max(0, Math.min(recordCount - index, rangeEnd - rangeStart + 1)));
+        int[] date = new int[3];
+        for(; index < recordCount; index++){
+            int offset = offsetOf(index);
+            int epochDay = buffer.getInt(offset);
+            if(epochDay > rangeEnd) break;
+            int count = buffer.getInt(offset + 4);
+            if(count <= 0) continue;
+            FlexibleCalendarHelper.fromEpochDay(epochDay, date);
+            eventsByDay.put(date[0], date[1], date[2], getDayEvents(index, offset, count));
+        }
+        return eventsByDay;
+    }
+
+    private DayEvents getDayEvents(int index, int offset, int count){
+        DayEvents dayEvents = dayViews[index];
+        if(dayEvents == null){
+            dayEvents = new DayEvents(offset, count);
+            dayViews[index] = dayEvents;
+        }
+        return dayEvents;
+    }
+
+    /**
+     * @return index of the first record on or after the epoch day
+     */
+    private int lowerBound(int epochDay){
+        int lo = 0;
+        int hi = recordCount;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(buffer.getInt(offsetOf(mid)) < epochDay){
+                lo = mid + 1;
+            }else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int offsetOf(int index){
+        return HEADER_SIZE + index * recordSize;
+    }
+
+    /**
+     * Events of a day read from its record, the events are the shared color events
+     */
+    private class DayEvents extends AbstractList<Event> {
+
+        private final int offset;
+        private final int count;
+
+        DayEvents(int offset, int count){
+            this.offset = offset;
+            this.count = count;
+        }
+
+        @Override
+        public Event get(int location) {
+            if(location < 0 || location >= count){
+                throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + count);
+            }
+            int colorIndex = Math.min(location, maxColors - 1);
+            return getColorEvent(buffer.getInt(offset + 8 + 4 * colorIndex));
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    private Event getColorEvent(final int color){
+        synchronized (colorEvents){
+            Event event = colorEvents.get(color);
+            if(event == null){
+                event = new Event() {
+                    @Override
+                    public int getColor() {
+                        return color;
+                    }
+                };
+                colorEvents.put(color, event);
+            }
+            return event;
+        }
+    }
+
+    /**
+     * Writes a snapshot incrementally. Days must be added in ascending order.
+     * The snapshot file is replaced only on {@link #commit()}, closing the writer
+     * without committing discards the written days
+     */
+    public static class Writer {
+
+        private final File file;
+        private final File tempFile;
+        private final FileOutputStream fileOutputStream;
+        private final DataOutputStream out;
+        private final int maxColors;
+        private final int[] colors;
+        private int dayCount;
+        private int lastEpochDay = Integer.MIN_VALUE;
+        private boolean closed;
+
+        /**
+         * @param file snapshot file
+         * @param maxColors maximum number of colors stored for a day, at least 1 so that
+         *                  the days having events can be decorated
+         * @param appVersion version of the app, like the version code, the color resources belong to
+         * @throws IOException if the temporary file cannot be created
+         */
+        public Writer(File file, int maxColors, int appVersion) throws IOException{
+            if(maxColors < 1){
+                throw new IllegalArgumentException("Max colors must be at least 1");
+            }
+            this.file = file;
+            this.tempFile = new File(file.getPath() + ".tmp");
+            this.maxColors = maxColors;
+            this.colors = new int[maxColors];
+            this.fileOutputStream = new FileOutputStream(tempFile);
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            try{
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(appVersion);
+                out.writeInt(maxColors);
+                //the number of days is written on commit
+                out.writeInt(0);
+            }catch (IOException e){
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Add the decoration of a day
+         * @param count number of events of the day
+         * @param colors color resources of the first events, only the first
+         *               min(count, max colors) colors are stored
+         */
+        public void addDay(int year, int month, int day, int count, int[] colors) throws IOException{
+            int epochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+            if(epochDay <= lastEpochDay){
+                throw new IllegalArgumentException("Days must be added in ascending order");
+            }
+            lastEpochDay = epochDay;
+            dayCount++;
+            out.writeInt(epochDay);
+            out.writeInt(count);
+            int storedColors = Math.min(count, maxColors);
+            for(int i = 0; i < maxColors; i++){
+                out.writeInt(i < storedColors ? colors[i] : 0);
+            }
+        }
+
+        /**
+         * Add the decorations of all the days of the events
+         */
+        public void addEvents(EventsByDay events) throws IOException{
+            for(int i = 0; i < events.size(); i++){
+                int key = events.keyAt(i);
+                List<? extends Event> dayEvents = events.valueAt(i);
+                int count = dayEvents.size();
+                for(int c = 0, n = Math.min(count, maxColors); c < n; c++){
+                    colors[c] = dayEvents.get(c).getColor();
+                }
+                addDay(EventsByDay.getYear(key), EventsByDay.getMonth(key), EventsByDay.getDay(key), count, colors);
+            }
+        }
+
+        /**
+         * Replace the snapshot file with the written days
+         * @throws IOException if the snapshot cannot be written, the existing snapshot is kept
+         */
+        public void commit() throws IOException{
+            out.flush();
+            ByteBuffer dayCountBuffer = ByteBuffer.allocate(4);
+            dayCountBuffer.putInt(0, dayCount);
+            fileOutputStream.getChannel().write(dayCountBuffer, DAY_COUNT_OFFSET);
+            fileOutputStream.getFD().sync();
+            closed = true;
+            out.close();
+            // rename is atomic, readers see either the old or the new snapshot
+            if(!tempFile.renameTo(file)){
+                tempFile.delete();
+                throw new IOException("Could not replace " + file);
+            }
+        }
+
+        /**
+         * Close the writer, discarding the written days if not committed
+         */
+        public void close(){
+            if(closed) return;
+            closed = true;
+            try{
+                out.close();
+            }catch (IOException ignored){
+            }
+            tempFile.delete();
+        }
+    }
+}
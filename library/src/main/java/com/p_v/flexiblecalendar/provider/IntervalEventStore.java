@@ -0,0 +1,301 @@
+package com.p_v.flexiblecalendar.provider;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Event store for events spanning multiple days.
+ * <p>
+ * Every event is kept once as a packed interval of epoch days instead of being
+ * copied into every day it covers. The intervals are sorted by the start day and
+ * indexed with an implicit augmented interval tree, making the per day and per month
+ * queries logarithmic in the number of events plus the number of matching events.
+ * The days having events are indexed too, see {@link EventDayIndex}.
+ *
+ * @author p-v
+ */
+public class IntervalEventStore implements FlexibleCalendarView.EventDataProvider,
+        FlexibleCalendarView.EventRangeDataProvider, FlexibleCalendarView.EventCountDataProvider,
+        FlexibleCalendarView.EventDayMaskProvider {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Intervals packed as start epoch day in the high and end epoch day in the low 32 bits
+     */
+    private long[] intervals;
+    private Event[] events;
+    private int size;
+
+    /**
+     * Maximum end day of the subtree rooted at the index of the implicit tree
+     */
+    private int[] maxEnd;
+
+    /**
+     * Days having events, rebuilt with the interval index
+     */
+    private final EventDayIndex dayIndex = new EventDayIndex();
+
+    /**
+     * Set when events are added or removed, the index is rebuilt on the next query
+     */
+    private boolean dirty;
+
+    public IntervalEventStore(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntervalEventStore(int initialCapacity){
+        intervals = new long[Math.max(initialCapacity, 1)];
+        events = new Event[intervals.length];
+        maxEnd = new int[0];
+    }
+
+    /**
+     * Add a single day event
+     */
+    public void add(Event event, int year, int month, int day){
+        int epochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+        addInterval(event, epochDay, epochDay);
+    }
+
+    /**
+     * Add an event spanning from the start to the end date, both inclusive
+     */
+    public void add(Event event, int startYear, int startMonth, int startDay,
+                    int endYear, int endMonth, int endDay){
+        addInterval(event, FlexibleCalendarHelper.toEpochDay(startYear, startMonth, startDay),
+                FlexibleCalendarHelper.toEpochDay(endYear, endMonth, endDay));
+    }
+
+    /**
+     * Add an event spanning from the start to the end epoch day, both inclusive
+     */
+    public synchronized void addInterval(Event event, int startEpochDay, int endEpochDay){
+        if(endEpochDay < startEpochDay){
+            throw new IllegalArgumentException("End day is before the start day");
+        }
+        if(size == intervals.length){
+            int capacity = size * 2;
+            intervals = Arrays.copyOf(intervals, capacity);
+            events = Arrays.copyOf(events, capacity);
+        }
+        intervals[size] = pack(startEpochDay, endEpochDay);
+        events[size] = event;
+        size++;
+        dirty = true;
+    }
+
+    /**
+     * Remove all the occurrences of the event
+     * @return true if the event was present
+     */
+    public synchronized boolean remove(Event event){
+        int newSize = 0;
+        for(int i = 0; i < size; i++){
+            if(events[i] != event){
+                intervals[newSize] = intervals[i];
+                events[newSize] = events[i];
+                newSize++;
+            }
+        }
+        boolean removed = newSize != size;
+        for(int i = newSize; i < size; i++){
+            events[i] = null;
+        }
+        size = newSize;
+        dirty |= removed;
+        return removed;
+    }
+
+    public synchronized void clear(){
+        Arrays.fill(events, 0, size, null);
+        size = 0;
+        dirty = true;
+    }
+
+    /**
+     * @return number of events in the store
+     */
+    public synchronized int size(){
+        return size;
+    }
+
+    @Override
+    public synchronized List<? extends Event> getEventsForTheDay(int year, int month, int day) {
+        ensureIndex();
+        int epochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+        List<Event> result = null;
+        int index = firstOverlapping(0, size - 1, epochDay, epochDay);
+        while(index != -1){
+            if(result == null){
+                result = new ArrayList<>();
+            }
+            result.add(events[index]);
+            index = nextOverlapping(index, epochDay, epochDay);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int getEventDayMask(int year, int month) {
+        ensureIndex();
+        return dayIndex.getEventDayMask(year, month);
+    }
+
+    @Override
+    public synchronized int getEventCountForTheDay(int year, int month, int day, int[] colors) {
+        ensureIndex();
+        int epochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+        int count = 0;
+        int index = firstOverlapping(0, size - 1, epochDay, epochDay);
+        while(index != -1){
+            if(count < colors.length){
+                colors[count] = events[index].getColor();
+            }
+            count++;
+            index = nextOverlapping(index, epochDay, epochDay);
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                         int endYear, int endMonth, int endDay) {
+        ensureIndex();
+        int rangeStart = FlexibleCalendarHelper.toEpochDay(startYear, startMonth, startDay);
+        int rangeEnd = FlexibleCalendarHelper.toEpochDay(endYear, endMonth, endDay);
+        if(rangeEnd < rangeStart) return null;
+
+        @SuppressWarnings("unchecked")
+        List<Event>[] dayEvents = new List[rangeEnd - rangeStart + 1];
+        int index = firstOverlapping(0, size - 1, rangeStart, rangeEnd);
+        while(index != -1){
+            int from = Math.max(start(intervals[index]), rangeStart);
+            int to = Math.min(end(intervals[index]), rangeEnd);
+            for(int d = from; d <= to; d++){
+                List<Event> list = dayEvents[d - rangeStart];
+                if(list == null){
+                    list = dayEvents[d - rangeStart] = new ArrayList<>(2);
+                }
+                list.add(events[index]);
+            }
+            index = nextOverlapping(index, rangeStart, rangeEnd);
+        }
+
+        EventsByDay eventsByDay = new EventsByDay();
+        int[] date = new int[3];
+        for(int i = 0; i < dayEvents.length; i++){
+            if(dayEvents[i] != null){
+                FlexibleCalendarHelper.fromEpochDay(rangeStart + i, date);
+                eventsByDay.put(date[0], date[1], date[2], dayEvents[i]);
+            }
+        }
+        return eventsByDay;
+    }
+
+    /**
+     * Sort the intervals by the start day and compute the max end day of every subtree
+     */
+    private void ensureIndex(){
+        if(!dirty) return;
+        // sort by start day keeping the insertion order for equal start days
+        long[] order = new long[size];
+        for(int i = 0; i < size; i++){
+            order[i] = ((long) start(intervals[i]) << 32) | i;
+        }
+        Arrays.sort(order);
+        long[] sortedIntervals = new long[intervals.length];
+        Event[] sortedEvents = new Event[events.length];
+        for(int i = 0; i < size; i++){
+            int from = (int) order[i];
+            sortedIntervals[i] = intervals[from];
+            sortedEvents[i] = events[from];
+        }
+        intervals = sortedIntervals;
+        events = sortedEvents;
+
+        if(maxEnd.length < size){
+            maxEnd = new int[intervals.length];
+        }
+        buildMaxEnd(0, size - 1);
+
+        dayIndex.clear();
+        int[] startDate = new int[3];
+        int[] endDate = new int[3];
+        for(int i = 0; i < size; i++){
+            FlexibleCalendarHelper.fromEpochDay(start(intervals[i]), startDate);
+            FlexibleCalendarHelper.fromEpochDay(end(intervals[i]), endDate);
+            dayIndex.addRange(startDate[0], startDate[1], startDate[2], endDate[0], endDate[1], endDate[2]);
+        }
+        dirty = false;
+    }
+
+    private int buildMaxEnd(int lo, int hi){
+        if(lo > hi) return Integer.MIN_VALUE;
+        int mid = (lo + hi) >>> 1;
+        int max = Math.max(end(intervals[mid]),
+                Math.max(buildMaxEnd(lo, mid - 1), buildMaxEnd(mid + 1, hi)));
+        maxEnd[mid] = max;
+        return max;
+    }
+
+    /**
+     * Find the first interval in sorted order, within the subtree of lo to hi,
+     * overlapping the range
+     * @return index of the interval, -1 if no interval overlaps
+     */
+    private int firstOverlapping(int lo, int hi, int rangeStart, int rangeEnd){
+        if(lo > hi) return -1;
+        int mid = (lo + hi) >>> 1;
+        if(maxEnd[mid] < rangeStart) return -1;
+        int left = firstOverlapping(lo, mid - 1, rangeStart, rangeEnd);
+        if(left != -1) return left;
+        if(start(intervals[mid]) > rangeEnd) return -1;
+        if(end(intervals[mid]) >= rangeStart) return mid;
+        return firstOverlapping(mid + 1, hi, rangeStart, rangeEnd);
+    }
+
+    /**
+     * Find the next interval in sorted order after the index overlapping the range
+     * @return index of the interval, -1 if there are no more overlapping intervals
+     */
+    private int nextOverlapping(int index, int rangeStart, int rangeEnd){
+        // walk the implicit tree from the root looking for the first match after the index
+        return nextOverlapping(0, size - 1, index, rangeStart, rangeEnd);
+    }
+
+    private int nextOverlapping(int lo, int hi, int after, int rangeStart, int rangeEnd){
+        if(lo > hi || hi <= after) return -1;
+        int mid = (lo + hi) >>> 1;
+        if(maxEnd[mid] < rangeStart) return -1;
+        if(mid > after){
+            int left = nextOverlapping(lo, mid - 1, after, rangeStart, rangeEnd);
+            if(left != -1) return left;
+            if(start(intervals[mid]) > rangeEnd) return -1;
+            if(end(intervals[mid]) >= rangeStart) return mid;
+        }else if(start(intervals[mid]) > rangeEnd){
+            return -1;
+        }
+        return nextOverlapping(mid + 1, hi, after, rangeStart, rangeEnd);
+    }
+
+    private static long pack(int start, int end){
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    private static int start(long interval){
+        return (int) (interval >> 32);
+    }
+
+    private static int end(long interval){
+        return (int) interval;
+    }
+}
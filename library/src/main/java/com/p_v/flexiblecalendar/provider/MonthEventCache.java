@@ -0,0 +1,467 @@
+package com.p_v.flexiblecalendar.provider;
+
+import android.util.LruCache;
+import android.util.SparseIntArray;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+import com.p_v.flexiblecalendar.entity.EventCountsByDay;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of the events of a month, sitting between the {@link FlexibleCalendarView}
+ * and the event data provider. The events of a month are fetched once and served from
+ * the cache until the month or one of its days is invalidated. The event counts of the cells
+ * displaying only the count are cached the same way.
+ * <p>
+ * The events and counts returned by the cache are shared, they are frozen when cached and
+ * throw if modified. The events returned by the provider are frozen the same way.
+ *
+ * @author p-v
+ */
+public class MonthEventCache {
+
+    /*
+     * Approximate memory used by a cached month, used with the byte budget
+     */
+    private static final int BYTES_PER_MONTH = 96;
+    private static final int BYTES_PER_DAY = 48;
+    private static final int BYTES_PER_EVENT = 16;
+    private static final int BYTES_PER_COUNT = 8;
+
+    /**
+     * Number of invalidated days after which the whole month is fetched again
+     */
+    private static final int MAX_STALE_DAYS = 7;
+
+    private final LruCache<Integer, CachedMonth> cache;
+    /**
+     * The cached months by key, for looking up a month without promoting it in the LRU order
+     */
+    private final Map<Integer, CachedMonth> cachedMonths = new HashMap<>();
+    private final boolean byteBudget;
+
+    /**
+     * Incremented when all the months are invalidated, used to drop the results of fetches
+     * which were running while the cache got invalidated
+     */
+    private int generation;
+    /**
+     * Generation of the months invalidated since the whole cache was last invalidated,
+     * used to drop only the fetches of the invalidated month
+     */
+    private final SparseIntArray monthGenerations = new SparseIntArray();
+    private boolean clearing;
+
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    /**
+     * Create a cache holding at most the provided number of months
+     * @param maxMonths maximum number of months in the cache
+     */
+    public MonthEventCache(int maxMonths){
+        this(maxMonths, false);
+    }
+
+    private MonthEventCache(int maxSize, boolean byteBudget){
+        this.byteBudget = byteBudget;
+        this.cache = new LruCache<Integer, CachedMonth>(maxSize){
+            @Override
+            protected int sizeOf(Integer key, CachedMonth value) {
+                return value.size;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, CachedMonth oldValue, CachedMonth newValue) {
+                if(newValue == null){
+                    cachedMonths.remove(key);
+                }
+                if(evicted && !clearing){
+                    evictionCount++;
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a cache limited by the approximate memory used by the cached events
+     * @param maxBytes memory budget in bytes
+     * @return the cache
+     */
+    public static MonthEventCache withByteBudget(int maxBytes){
+        return new MonthEventCache(maxBytes, true);
+    }
+
+    /**
+     * Get the events for the range, fetching the months which are not cached from the provider
+     *
+     * @param provider provider used for the months missing in the cache
+     * @return events bucketed by day
+     */
+    public EventsByDay getEventsForTheRange(FlexibleCalendarView.EventRangeDataProvider provider,
+                                            int startYear, int startMonth, int startDay,
+                                            int endYear, int endMonth, int endDay){
+        int startKey = getMonthKey(startYear, startMonth);
+        int endKey = getMonthKey(endYear, endMonth);
+        if(startKey == endKey && startDay == 1
+                && endDay == FlexibleCalendarHelper.getDaysInMonth(endYear, endMonth)){
+            return getMonthEvents(provider, startYear, startMonth);
+        }
+
+        EventsByDay[] months = new EventsByDay[endKey - startKey + 1];
+        for(int key = startKey; key <= endKey; key++){
+            months[key - startKey] = getMonthEvents(provider, key / 12, key % 12);
+        }
+        return getEventsForTheRange(months, startKey, startDay, endKey, endDay);
+    }
+
+    /**
+     * Get the events for the range only if all the months of the range are cached.
+     * The provider is never called, making the call cheap enough for the main thread
+     *
+     * @return events bucketed by day, null if any of the months is not cached or invalidated
+     */
+    public EventsByDay peekEventsForTheRange(int startYear, int startMonth, int startDay,
+                                             int endYear, int endMonth, int endDay){
+        int startKey = getMonthKey(startYear, startMonth);
+        int endKey = getMonthKey(endYear, endMonth);
+        EventsByDay[] months = new EventsByDay[endKey - startKey + 1];
+        synchronized (this){
+            for(int key = startKey; key <= endKey; key++){
+                CachedMonth cached = cache.get(key);
+                if(cached == null || cached.events == null || cached.staleDays != 0){
+                    return null;
+                }
+                months[key - startKey] = cached.events;
+            }
+            hitCount++;
+        }
+        if(startKey == endKey && startDay == 1
+                && endDay == FlexibleCalendarHelper.getDaysInMonth(endYear, endMonth)){
+            return months[0];
+        }
+        return getEventsForTheRange(months, startKey, startDay, endKey, endDay);
+    }
+
+    private static EventsByDay getEventsForTheRange(EventsByDay[] months, int startKey, int startDay,
+                                                    int endKey, int endDay){
+        EventsByDay result = new EventsByDay();
+        for(int key = startKey; key <= endKey; key++){
+            int year = key / 12;
+            int month = key % 12;
+            EventsByDay monthEvents = months[key - startKey];
+            int fromDay = key == startKey ? startDay : 1;
+            int toDay = key == endKey ? endDay : FlexibleCalendarHelper.getDaysInMonth(year, month);
+            for(int i = 0; i < monthEvents.size(); i++){
+                int dayKey = monthEvents.keyAt(i);
+                int day = EventsByDay.getDay(dayKey);
+                if(day >= fromDay && day <= toDay){
+                    result.put(dayKey, monthEvents.valueAt(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the events for all the days of the month
+     *
+     * @param provider provider used if the month is not cached
+     * @param year year
+     * @param month month
+     * @return events of the month bucketed by day
+     */
+    public EventsByDay getMonthEvents(FlexibleCalendarView.EventRangeDataProvider provider, int year, int month){
+        Integer key = getMonthKey(year, month);
+        CachedMonth cached;
+        int staleDays;
+        int fetchGeneration;
+        synchronized (this){
+            cached = cache.get(key);
+            if(cached != null && cached.events != null && cached.staleDays == 0){
+                hitCount++;
+                return cached.events;
+            }
+            missCount++;
+            staleDays = cached == null ? 0 : cached.staleDays;
+            fetchGeneration = getGeneration(key);
+        }
+
+        // fetching without holding the lock so that invalidation never waits for the provider
+        int daysInMonth = FlexibleCalendarHelper.getDaysInMonth(year, month);
+        EventsByDay events;
+        if(cached == null || cached.events == null || Integer.bitCount(staleDays) > MAX_STALE_DAYS){
+            events = provider.getEventsForTheRange(year, month, 1, year, month, daysInMonth);
+            if(events == null){
+                events = new EventsByDay(0);
+            }
+        }else{
+            //fetch only the invalidated days
+            events = new EventsByDay(cached.events);
+            for(int day = 1; day <= daysInMonth; day++){
+                if((staleDays & (1 << (day - 1))) != 0){
+                    EventsByDay dayEvents = provider.getEventsForTheRange(year, month, day, year, month, day);
+                    events.put(year, month, day, dayEvents == null ? null : dayEvents.get(year, month, day));
+                }
+            }
+        }
+
+        synchronized (this){
+            if(fetchGeneration == getGeneration(key)){
+                CachedMonth current = cache.get(key);
+                put(key, events, 0, current == null ? null : current.counts,
+                        current == null ? 0 : current.staleCountDays);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Get the event counts for the range, asking the provider for the months which are not cached
+     *
+     * @param provider provider of the counts used for the months missing in the cache
+     * @param dayMaskProvider provider of the days having events, null for asking the provider for every day
+     * @param maxColors number of colors kept for every day
+     * @return event counts of the range
+     */
+    public EventCountsByDay getEventCountsForTheRange(FlexibleCalendarView.EventCountDataProvider provider,
+                                                      FlexibleCalendarView.EventDayMaskProvider dayMaskProvider,
+                                                      int maxColors,
+                                                      int startYear, int startMonth, int startDay,
+                                                      int endYear, int endMonth, int endDay){
+        int startKey = getMonthKey(startYear, startMonth);
+        int endKey = getMonthKey(endYear, endMonth);
+        if(startKey == endKey && startDay == 1
+                && endDay == FlexibleCalendarHelper.getDaysInMonth(endYear, endMonth)){
+            return getMonthEventCounts(provider, dayMaskProvider, maxColors, startYear, startMonth);
+        }
+        EventCountsByDay result = new EventCountsByDay(maxColors);
+        for(int key = startKey; key <= endKey; key++){
+            EventCountsByDay monthCounts = getMonthEventCounts(provider, dayMaskProvider, maxColors, key / 12, key % 12);
+            result.putRange(monthCounts, getRangeStartKey(key, startKey, startDay), getRangeEndKey(key, endKey, endDay));
+        }
+        return result;
+    }
+
+    /**
+     * Get the event counts for the range only if all the months of the range are cached
+     *
+     * @return event counts of the range, null if any of the months is not cached or invalidated
+     */
+    public EventCountsByDay peekEventCountsForTheRange(int maxColors, int startYear, int startMonth, int startDay,
+                                                       int endYear, int endMonth, int endDay){
+        int startKey = getMonthKey(startYear, startMonth);
+        int endKey = getMonthKey(endYear, endMonth);
+        EventCountsByDay[] months = new EventCountsByDay[endKey - startKey + 1];
+        synchronized (this){
+            for(int key = startKey; key <= endKey; key++){
+                CachedMonth cached = cache.get(key);
+                if(cached == null || cached.counts == null || cached.staleCountDays != 0
+                        || cached.counts.getMaxColors() != maxColors){
+                    return null;
+                }
+                months[key - startKey] = cached.counts;
+            }
+            hitCount++;
+        }
+        if(startKey == endKey && startDay == 1
+                && endDay == FlexibleCalendarHelper.getDaysInMonth(endYear, endMonth)){
+            return months[0];
+        }
+        EventCountsByDay result = new EventCountsByDay(maxColors);
+        for(int key = startKey; key <= endKey; key++){
+            result.putRange(months[key - startKey], getRangeStartKey(key, startKey, startDay),
+                    getRangeEndKey(key, endKey, endDay));
+        }
+        return result;
+    }
+
+    /**
+     * Get the event counts for all the days of the month. Counts are cheap to compute,
+     * a month having invalidated days is counted again as a whole
+     */
+    private EventCountsByDay getMonthEventCounts(FlexibleCalendarView.EventCountDataProvider provider,
+                                                 FlexibleCalendarView.EventDayMaskProvider dayMaskProvider,
+                                                 int maxColors, int year, int month){
+        Integer key = getMonthKey(year, month);
+        int fetchGeneration;
+        synchronized (this){
+            CachedMonth cached = cache.get(key);
+            if(cached != null && cached.counts != null && cached.staleCountDays == 0
+                    && cached.counts.getMaxColors() == maxColors){
+                hitCount++;
+                return cached.counts;
+            }
+            missCount++;
+            fetchGeneration = getGeneration(key);
+        }
+
+        EventCountsByDay counts = new EventCountsByDay(maxColors);
+        int dayMask = dayMaskProvider == null ?
+                FlexibleCalendarView.ALL_DAYS_MASK : dayMaskProvider.getEventDayMask(year, month);
+        counts.putMonthCounts(provider, year, month, 1, FlexibleCalendarHelper.getDaysInMonth(year, month), dayMask);
+
+        synchronized (this){
+            if(fetchGeneration == getGeneration(key)){
+                CachedMonth current = cache.get(key);
+                put(key, current == null ? null : current.events, current == null ? 0 : current.staleDays, counts, 0);
+            }
+        }
+        return counts;
+    }
+
+    private void put(Integer key, EventsByDay events, int staleDays, EventCountsByDay counts, int staleCountDays){
+        CachedMonth cachedMonth = new CachedMonth(events == null ? null : events.freeze(),
+                counts == null ? null : counts.freeze(), sizeOf(events, counts));
+        cachedMonth.staleDays = staleDays;
+        cachedMonth.staleCountDays = staleCountDays;
+        cachedMonths.put(key, cachedMonth);
+        cache.put(key, cachedMonth);
+    }
+
+    /**
+     * @return generation of the month, changed whenever the month or the whole cache is invalidated
+     */
+    private int getGeneration(int monthKey){
+        return generation + monthGenerations.get(monthKey);
+    }
+
+    private static int getRangeStartKey(int monthKey, int startKey, int startDay){
+        return EventsByDay.getDayKey(monthKey / 12, monthKey % 12, monthKey == startKey ? startDay : 1);
+    }
+
+    private static int getRangeEndKey(int monthKey, int endKey, int endDay){
+        int year = monthKey / 12;
+        int month = monthKey % 12;
+        return EventsByDay.getDayKey(year, month,
+                monthKey == endKey ? endDay : FlexibleCalendarHelper.getDaysInMonth(year, month));
+    }
+
+    /**
+     * Invalidate all the events of the month
+     */
+    public synchronized void invalidateMonth(int year, int month){
+        int key = getMonthKey(year, month);
+        monthGenerations.put(key, monthGenerations.get(key) + 1);
+        clearing = true;
+        cache.remove(key);
+        clearing = false;
+    }
+
+    /**
+     * Invalidate the events of a single day. Only the invalidated days are fetched
+     * again when the month is requested next time
+     */
+    public synchronized void invalidateDay(int year, int month, int day){
+        int key = getMonthKey(year, month);
+        //only the fetches of the month are dropped
+        monthGenerations.put(key, monthGenerations.get(key) + 1);
+        //look up without promoting the month, a stale month ages out like the others
+        CachedMonth cached = cachedMonths.get(key);
+        if(cached != null){
+            cached.staleDays |= 1 << (day - 1);
+            cached.staleCountDays |= 1 << (day - 1);
+        }
+    }
+
+    /**
+     * Invalidate all the cached months
+     */
+    public synchronized void invalidateAll(){
+        //the month generations are folded into a single increment of the generation
+        int maxMonthGeneration = 0;
+        for(int i = 0; i < monthGenerations.size(); i++){
+            maxMonthGeneration = Math.max(maxMonthGeneration, monthGenerations.valueAt(i));
+        }
+        generation += maxMonthGeneration + 1;
+        monthGenerations.clear();
+        clearing = true;
+        cache.evictAll();
+        clearing = false;
+    }
+
+    /**
+     * @return number of requests served from the cache
+     */
+    public synchronized int getHitCount(){
+        return hitCount;
+    }
+
+    /**
+     * @return number of requests which needed the provider
+     */
+    public synchronized int getMissCount(){
+        return missCount;
+    }
+
+    /**
+     * @return number of months evicted for staying within the budget
+     */
+    public synchronized int getEvictionCount(){
+        return evictionCount;
+    }
+
+    /**
+     * @return number of cached months, or the approximate bytes used if the cache has a byte budget
+     */
+    public int size(){
+        return cache.size();
+    }
+
+    /**
+     * @return maximum number of months, or the byte budget if the cache has a byte budget
+     */
+    public int maxSize(){
+        return cache.maxSize();
+    }
+
+    private int sizeOf(EventsByDay events, EventCountsByDay counts){
+        if(!byteBudget) return 1;
+        int size = BYTES_PER_MONTH;
+        if(events != null){
+            for(int i = 0; i < events.size(); i++){
+                size += BYTES_PER_DAY + events.valueAt(i).size() * BYTES_PER_EVENT;
+            }
+        }
+        if(counts != null){
+            size += counts.size() * (BYTES_PER_COUNT + counts.getMaxColors() * 4);
+        }
+        return size;
+    }
+
+    private static int getMonthKey(int year, int month){
+        return year * 12 + month;
+    }
+
+    private static class CachedMonth {
+        /**
+         * Events of the month, null if only the counts are cached
+         */
+        final EventsByDay events;
+        /**
+         * Event counts of the month, null if only the events are cached
+         */
+        final EventCountsByDay counts;
+        final int size;
+
+        /**
+         * Bit mask of the days whose events are invalidated, bit 0 is the first day of the month
+         */
+        int staleDays;
+        /**
+         * Bit mask of the days whose counts are invalidated
+         */
+        int staleCountDays;
+
+        CachedMonth(EventsByDay events, EventCountsByDay counts, int size){
+            this.events = events;
+            this.counts = counts;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.p_v.flexiblecalendar.provider;
+
+import com.p_v.flexiblecalendar.DailyEventRangeDataProvider;
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event provider overlaying the events of several sources, like work, personal and
+ * team calendars. Every source has a priority and can be hidden.
+ * <p>
+ * The day buckets of the visible sources are combined with a k-way merge over their
+ * sorted day keys. Events of a day are ordered by the source priority, highest first.
+ * A day present in a single source reuses the list of that source, days present in
+ * several sources get a merged list. The scratch arrays of the merge are kept by the provider,
+ * and merging into a reused output with {@link #getEventsForTheRange(int, int, int, int, int, int, EventsByDay)}
+ * also reuses the merged lists, so a steady state merge does not allocate.
+ *
+ * @author p-v
+ */
+public class MultiSourceEventProvider implements FlexibleCalendarView.EventRangeDataProvider,
+        FlexibleCalendarView.EventDayMaskProvider {
+
+    /**
+     * Sources ordered by priority, highest first
+     */
+    private final List<EventSource> sources = new ArrayList<>();
+
+    /**
+     * Scratch structures of the merge, null while a merge is using them
+     */
+    private MergeScratch mergeScratch = new MergeScratch();
+
+    /**
+     * Add a source of events
+     * @param provider provider of the source
+     * @param priority priority of the source, events of higher priority sources come first
+     * @return the added source
+     */
+    public synchronized EventSource addSource(FlexibleCalendarView.EventRangeDataProvider provider, int priority){
+        EventSource source = new EventSource(this, provider, priority);
+        insertSorted(source);
+        return source;
+    }
+
+    /**
+     * Add a source of events with a per day provider
+     * @param provider provider of the source
+     * @param priority priority of the source, events of higher priority sources come first
+     * @return the added source
+     */
+    public EventSource addSource(FlexibleCalendarView.EventDataProvider provider, int priority){
+        return addSource(new DailyEventRangeDataProvider(provider), priority);
+    }
+
+    public synchronized boolean removeSource(EventSource source){
+        return sources.remove(source);
+    }
+
+    /**
+     * @return number of sources, including the hidden ones
+     */
+    public synchronized int getSourceCount(){
+        return sources.size();
+    }
+
+    @Override
+    public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                            int endYear, int endMonth, int endDay) {
+        //the returned events are kept by the caller, the output cannot be reused
+        return getEventsForTheRange(startYear, startMonth, startDay, endYear, endMonth, endDay, null);
+    }
+
+    /**
+     * Merge the events of the visible sources into the output. The output is cleared first,
+     * and the lists merged into it by a previous call are reused, so the lists of the previous
+     * content of the output must not be kept by the caller
+     *
+     * @param output events to merge into, null for a new output
+     * @return the merged events, the list of a single source if only one source has events
+     * in the range and the output is null
+     */
+    public EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                            int endYear, int endMonth, int endDay, EventsByDay output) {
+        MergeScratch scratch;
+        int k;
+        synchronized (this){
+            scratch = mergeScratch;
+            mergeScratch = null;
+            if(scratch == null){
+                //a merge is running on another thread
+                scratch = new MergeScratch();
+            }
+            scratch.ensureCapacity(sources.size());
+            k = 0;
+            for(int i = 0; i < sources.size(); i++){
+                EventSource source = sources.get(i);
+                if(source.visible) scratch.sources[k++] = source;
+            }
+        }
+
+        try{
+            EventsByDay[] buckets = scratch.buckets;
+            int nonEmpty = 0;
+            EventsByDay lastNonEmpty = null;
+            for(int i = 0; i < k; i++){
+                buckets[i] = scratch.sources[i].provider.getEventsForTheRange(startYear, startMonth, startDay,
+                        endYear, endMonth, endDay);
+                if(buckets[i] != null && buckets[i].size() > 0){
+                    nonEmpty++;
+                    lastNonEmpty = buckets[i];
+                }
+            }
+            if(output == null){
+                if(nonEmpty <= 1){
+                    return lastNonEmpty;
+                }
+                output = new EventsByDay();
+            }else{
+                scratch.recycleDayLists(output);
+            }
+            merge(buckets, k, scratch, output);
+            return output;
+        }finally {
+            scratch.clear(k);
+            synchronized (this){
+                mergeScratch = scratch;
+            }
+        }
+    }
+
+    /**
+     * @return days having events in any of the visible sources, all the days if a visible
+     * source does not provide the days having events
+     */
+    @Override
+    public synchronized int getEventDayMask(int year, int month) {
+        int mask = 0;
+        for(EventSource source : sources){
+            if(!source.visible) continue;
+            if(!(source.provider instanceof FlexibleCalendarView.EventDayMaskProvider)){
+                return FlexibleCalendarView.ALL_DAYS_MASK;
+            }
+            mask |= ((FlexibleCalendarView.EventDayMaskProvider) source.provider).getEventDayMask(year, month);
+        }
+        return mask;
+    }
+
+    /**
+     * k-way merge of the first k buckets, which are in priority order
+     */
+    private static void merge(EventsByDay[] buckets, int k, MergeScratch scratch, EventsByDay merged){
+        int[] cursors = scratch.cursors;
+        while(true){
+            // smallest day key among the heads of the buckets
+            int minKey = Integer.MAX_VALUE;
+            int sources = 0;
+            int totalEvents = 0;
+            int singleSource = -1;
+            for(int i = 0; i < k; i++){
+                EventsByDay bucket = buckets[i];
+                if(bucket == null || cursors[i] >= bucket.size()) continue;
+                int key = bucket.keyAt(cursors[i]);
+                if(key < minKey){
+                    minKey = key;
+                    sources = 0;
+                    totalEvents = 0;
+                }
+                if(key == minKey){
+                    sources++;
+                    totalEvents += bucket.valueAt(cursors[i]).size();
+                    singleSource = i;
+                }
+            }
+            if(sources == 0) break;
+
+            if(sources == 1){
+                merged.put(minKey, buckets[singleSource].valueAt(cursors[singleSource]));
+                cursors[singleSource]++;
+            }else{
+                MergedDayList dayEvents = scratch.obtainDayList(totalEvents);
+                for(int i = 0; i < k; i++){
+                    EventsByDay bucket = buckets[i];
+                    if(bucket != null && cursors[i] < bucket.size() && bucket.keyAt(cursors[i]) == minKey){
+                        dayEvents.addAll(bucket.valueAt(cursors[i]));
+                        cursors[i]++;
+                    }
+                }
+                merged.put(minKey, dayEvents);
+            }
+        }
+    }
+
+    private void insertSorted(EventSource source){
+        int index = 0;
+        while(index < sources.size() && sources.get(index).priority >= source.priority){
+            index++;
+        }
+        sources.add(index, source);
+    }
+
+    /**
+     * List of the events of a day present in several sources, recognized when the output it was
+     * merged into is reused
+     */
+    private static class MergedDayList extends ArrayList<Event> {
+    }
+
+    /**
+     * Arrays and lists reused by the merges, owned by a single merge at a time
+     */
+    private static class MergeScratch {
+
+        EventSource[] sources = new EventSource[0];
+        EventsByDay[] buckets = new EventsByDay[0];
+        int[] cursors = new int[0];
+        private final List<MergedDayList> dayLists = new ArrayList<>();
+
+        void ensureCapacity(int sourceCount){
+            if(sources.length < sourceCount){
+                sources = new EventSource[sourceCount];
+                buckets = new EventsByDay[sourceCount];
+                cursors = new int[sourceCount];
+            }
+        }
+
+        /**
+         * Keep the merged lists of the output for the next merge and clear the output
+         */
+        void recycleDayLists(EventsByDay output){
+            for(int i = 0; i < output.size(); i++){
+                List<? extends Event> dayEvents = output.valueAt(i);
+                if(dayEvents instanceof MergedDayList){
+                    dayLists.add((MergedDayList) dayEvents);
+                }
+            }
+            output.clear();
+        }
+
+        MergedDayList obtainDayList(int capacity){
+            MergedDayList dayList = dayLists.isEmpty() ? new MergedDayList() : dayLists.remove(dayLists.size() - 1);
+            dayList.clear();
+            dayList.ensureCapacity(capacity);
+            return dayList;
+        }
+
+        /**
+         * Drop the references to the sources and their events once the merge is done
+         */
+        void clear(int k){
+            for(int i = 0; i < k; i++){
+                sources[i] = null;
+                buckets[i] = null;
+                cursors[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * A source of events in the {@link MultiSourceEventProvider}
+     */
+    public static class EventSource {
+
+        private final MultiSourceEventProvider owner;
+        private final FlexibleCalendarView.EventRangeDataProvider provider;
+        private int priority;
+        private volatile boolean visible = true;
+
+        private EventSource(MultiSourceEventProvider owner,
+                            FlexibleCalendarView.EventRangeDataProvider provider, int priority){
+            this.owner = owner;
+            this.provider = provider;
+            this.priority = priority;
+        }
+
+        /**
+         * Show or hide the events of the source. Use
+         * {@link FlexibleCalendarView#setEventSourceVisible(EventSource, boolean)} for
+         * updating the displayed calendar
+         */
+        public void setVisible(boolean visible){
+            this.visible = visible;
+        }
+
+        public boolean isVisible(){
+            return visible;
+        }
+
+        public void setPriority(int priority){
+            synchronized (owner){
+                if(owner.sources.remove(this)){
+                    this.priority = priority;
+                    owner.insertSorted(this);
+                }else{
+                    this.priority = priority;
+                }
+            }
+        }
+
+        public int getPriority(){
+            return priority;
+        }
+
+        public FlexibleCalendarView.EventRangeDataProvider getProvider(){
+            return provider;
+        }
+    }
+}
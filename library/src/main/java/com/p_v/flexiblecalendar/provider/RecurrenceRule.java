@@ -0,0 +1,409 @@
+package com.p_v.flexiblecalendar.provider;
+
+import android.support.annotation.IntDef;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Recurrence rule supporting a practical subset of the iCalendar RRULE.
+ * <p>
+ * Supported parts are FREQ (DAILY, WEEKLY, MONTHLY, YEARLY), INTERVAL, BYDAY (with ordinals
+ * like 1MO or -1FR for monthly and yearly rules), BYMONTHDAY (negative values count from
+ * the end of the month), COUNT and UNTIL. Excluded dates (EXDATE) can be added using
+ * {@link #addExcludedDate(int, int, int)} or as an EXDATE part of the parsed string.
+ * Weeks start on MONDAY.
+ *
+ * @author p-v
+ */
+public class RecurrenceRule {
+
+    public static final int DAILY = 0;
+    public static final int WEEKLY = 1;
+    public static final int MONTHLY = 2;
+    public static final int YEARLY = 3;
+
+    @IntDef({DAILY, WEEKLY, MONTHLY, YEARLY})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Frequency{}
+
+    private static final String[] WEEKDAY_CODES = {"SU", "MO", "TU", "WE", "TH", "FR", "SA"};
+
+    private final int frequency;
+    private int interval = 1;
+
+    /**
+     * Days of the week from BYDAY as {@link Calendar} constants
+     */
+    private int[] byDayOfWeek = new int[0];
+
+    /**
+     * Ordinals of the BYDAY entries, 0 for every occurrence of the day in the month
+     */
+    private int[] byDayOrdinal = new int[0];
+    private int[] byMonthDay = new int[0];
+    private int count;
+    private int untilEpochDay = Integer.MAX_VALUE;
+
+    /**
+     * Sorted epoch days excluded from the recurrence
+     */
+    private int[] excludedEpochDays = new int[0];
+
+    public RecurrenceRule(@Frequency int frequency){
+        this.frequency = frequency;
+    }
+
+    /**
+     * Parse the rule from an RRULE value, for example <code>FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;COUNT=10</code>
+     *
+     * @param rule rule string, with or without the leading <code>RRULE:</code>
+     * @return the rule
+     * @throws IllegalArgumentException if the rule is invalid or uses unsupported parts
+     */
+    public static RecurrenceRule parse(String rule){
+        if(rule.startsWith("RRULE:")){
+            rule = rule.substring("RRULE:".length());
+        }
+        String[] parts = rule.split(";");
+        String frequency = null;
+        for(String part : parts){
+            if(part.startsWith("FREQ=")){
+                frequency = part.substring("FREQ=".length());
+            }
+        }
+        if(frequency == null){
+            throw new IllegalArgumentException("FREQ is missing in " + rule);
+        }
+
+        RecurrenceRule recurrenceRule = new RecurrenceRule(parseFrequency(frequency));
+        for(String part : parts){
+            int separator = part.indexOf('=');
+            if(separator == -1){
+                throw new IllegalArgumentException("Invalid rule part " + part);
+            }
+            String name = part.substring(0, separator);
+            String value = part.substring(separator + 1);
+            switch (name){
+                case "FREQ":
+                    break;
+                case "INTERVAL":
+                    recurrenceRule.setInterval(Integer.parseInt(value));
+                    break;
+                case "COUNT":
+                    recurrenceRule.setCount(Integer.parseInt(value));
+                    break;
+                case "UNTIL":
+                    int[] until = parseDate(value);
+                    recurrenceRule.setUntil(until[0], until[1], until[2]);
+                    break;
+                case "BYMONTHDAY":
+                    String[] days = value.split(",");
+                    int[] monthDays = new int[days.length];
+                    for(int i = 0; i < days.length; i++){
+                        monthDays[i] = Integer.parseInt(days[i]);
+                    }
+                    recurrenceRule.setByMonthDay(monthDays);
+                    break;
+                case "BYDAY":
+                    String[] weekdays = value.split(",");
+                    int[] daysOfWeek = new int[weekdays.length];
+                    int[] ordinals = new int[weekdays.length];
+                    for(int i = 0; i < weekdays.length; i++){
+                        String weekday = weekdays[i];
+                        int codeIndex = weekday.length() - 2;
+                        if(codeIndex < 0){
+                            throw new IllegalArgumentException("Invalid BYDAY " + weekday);
+                        }
+                        daysOfWeek[i] = parseDayOfWeek(weekday.substring(codeIndex));
+                        ordinals[i] = codeIndex == 0 ? 0 : Integer.parseInt(weekday.substring(0, codeIndex).replace("+", ""));
+                    }
+                    recurrenceRule.setByDay(daysOfWeek, ordinals);
+                    break;
+                case "EXDATE":
+                    for(String date : value.split(",")){
+                        int[] exDate = parseDate(date);
+                        recurrenceRule.addExcludedDate(exDate[0], exDate[1], exDate[2]);
+                    }
+                    break;
+                case "WKST":
+                    if(!"MO".equals(value)){
+                        throw new IllegalArgumentException("Only MO is supported for WKST");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported rule part " + name);
+            }
+        }
+        return recurrenceRule;
+    }
+
+    public void setInterval(int interval){
+        if(interval < 1){
+            throw new IllegalArgumentException("Interval should be greater than 0");
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * Limit the number of occurrences, excluded dates are counted as occurrences
+     * @param count number of occurrences, 0 for no limit
+     */
+    public void setCount(int count){
+        this.count = count;
+    }
+
+    /**
+     * Set the last date of the recurrence, inclusive
+     */
+    public void setUntil(int year, int month, int day){
+        this.untilEpochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+    }
+
+    /**
+     * Set the days of the week, for example {@link Calendar#MONDAY}
+     * @param daysOfWeek days of the week
+     * @param ordinals ordinal of every day within the month, like 1 for the first and -1 for
+     *                 the last. 0 for every occurrence of the day. Ignored for daily and weekly rules
+     */
+    public void setByDay(int[] daysOfWeek, int[] ordinals){
+        if(daysOfWeek.length != ordinals.length){
+            throw new IllegalArgumentException("Days of week and ordinals should be of the same length");
+        }
+        this.byDayOfWeek = daysOfWeek.clone();
+        this.byDayOrdinal = ordinals.clone();
+    }
+
+    /**
+     * Set the days of the month, negative values count from the end of the month
+     */
+    public void setByMonthDay(int[] monthDays){
+        this.byMonthDay = monthDays.clone();
+    }
+
+    public void addExcludedDate(int year, int month, int day){
+        int epochDay = FlexibleCalendarHelper.toEpochDay(year, month, day);
+        int index = Arrays.binarySearch(excludedEpochDays, epochDay);
+        if(index < 0){
+            index = -index - 1;
+            int[] days = new int[excludedEpochDays.length + 1];
+            System.arraycopy(excludedEpochDays, 0, days, 0, index);
+            days[index] = epochDay;
+            System.arraycopy(excludedEpochDays, index, days, index + 1, excludedEpochDays.length - index);
+            excludedEpochDays = days;
+        }
+    }
+
+    @Frequency
+    public int getFrequency(){
+        return frequency;
+    }
+
+    public int getInterval(){
+        return interval;
+    }
+
+    public int getCount(){
+        return count;
+    }
+
+    /**
+     * Occurrences of the rule in the month before applying COUNT and the excluded dates
+     *
+     * @param startEpochDay epoch day of the first occurrence of the event
+     * @param year year
+     * @param month month
+     * @return bit mask of the days, bit 0 being the first day of the month
+     */
+    int getRawOccurrences(int startEpochDay, int year, int month){
+        int daysInMonth = FlexibleCalendarHelper.getDaysInMonth(year, month);
+        int firstEpochDay = FlexibleCalendarHelper.toEpochDay(year, month, 1);
+        int lastEpochDay = firstEpochDay + daysInMonth - 1;
+        if(lastEpochDay < startEpochDay || firstEpochDay > untilEpochDay){
+            return 0;
+        }
+
+        int[] start = new int[3];
+        FlexibleCalendarHelper.fromEpochDay(startEpochDay, start);
+        int mask;
+        switch (frequency){
+            case DAILY:
+                mask = 0;
+                for(int day = 1; day <= daysInMonth; day++){
+                    int epochDay = firstEpochDay + day - 1;
+                    if(epochDay >= startEpochDay && (epochDay - startEpochDay) % interval == 0){
+                        mask |= 1 << (day - 1);
+                    }
+                }
+                mask = filterByMonthDay(mask, daysInMonth) & filterByDayOfWeek(firstEpochDay, daysInMonth);
+                break;
+            case WEEKLY:
+                mask = 0;
+                int startWeek = getWeekIndex(startEpochDay);
+                for(int day = 1; day <= daysInMonth; day++){
+                    int epochDay = firstEpochDay + day - 1;
+                    if((getWeekIndex(epochDay) - startWeek) % interval == 0){
+                        mask |= 1 << (day - 1);
+                    }
+                }
+                if(byDayOfWeek.length == 0){
+                    mask &= getDayOfWeekMask(firstEpochDay, daysInMonth,
+                            FlexibleCalendarHelper.getDayOfWeek(startEpochDay), 0);
+                }else{
+                    mask &= filterByDayOfWeek(firstEpochDay, daysInMonth);
+                }
+                mask = filterByMonthDay(mask, daysInMonth);
+                break;
+            case MONTHLY:
+            case YEARLY:
+                int difference = frequency == MONTHLY
+                        ? FlexibleCalendarHelper.getMonthDifference(start[0], start[1], year, month)
+                        : year - start[0];
+                if(difference % interval != 0 || (frequency == YEARLY && month != start[1])){
+                    return 0;
+                }
+                if(byMonthDay.length > 0){
+                    mask = filterByMonthDay(getAllDaysMask(daysInMonth), daysInMonth);
+                    if(byDayOfWeek.length > 0){
+                        mask &= getDayOfWeekMask(firstEpochDay, daysInMonth, byDayOfWeek, null);
+                    }
+                }else if(byDayOfWeek.length > 0){
+                    mask = getDayOfWeekMask(firstEpochDay, daysInMonth, byDayOfWeek, byDayOrdinal);
+                }else{
+                    // months not having the start day are skipped
+                    mask = start[2] <= daysInMonth ? 1 << (start[2] - 1) : 0;
+                }
+                break;
+            default:
+                return 0;
+        }
+
+        // remove the days before the start and after the until date
+        if(firstEpochDay < startEpochDay){
+            mask &= ~getAllDaysMask(startEpochDay - firstEpochDay);
+        }
+        if(lastEpochDay > untilEpochDay){
+            mask &= getAllDaysMask(untilEpochDay - firstEpochDay + 1);
+        }
+        return mask;
+    }
+
+    /**
+     * Remove the excluded dates from the occurrences of the month
+     */
+    int removeExcludedDates(int mask, int year, int month){
+        if(excludedEpochDays.length == 0 || mask == 0) return mask;
+        int firstEpochDay = FlexibleCalendarHelper.toEpochDay(year, month, 1);
+        int index = Arrays.binarySearch(excludedEpochDays, firstEpochDay);
+        if(index < 0){
+            index = -index - 1;
+        }
+        for(; index < excludedEpochDays.length && excludedEpochDays[index] - firstEpochDay < 31; index++){
+            mask &= ~(1 << (excludedEpochDays[index] - firstEpochDay));
+        }
+        return mask;
+    }
+
+    private int filterByMonthDay(int mask, int daysInMonth){
+        if(byMonthDay.length == 0) return mask;
+        int monthDayMask = 0;
+        for(int monthDay : byMonthDay){
+            int day = monthDay < 0 ? daysInMonth + monthDay + 1 : monthDay;
+            if(day >= 1 && day <= daysInMonth){
+                monthDayMask |= 1 << (day - 1);
+            }
+        }
+        return mask & monthDayMask;
+    }
+
+    private int filterByDayOfWeek(int firstEpochDay, int daysInMonth){
+        if(byDayOfWeek.length == 0) return getAllDaysMask(daysInMonth);
+        return getDayOfWeekMask(firstEpochDay, daysInMonth, byDayOfWeek, null);
+    }
+
+    private static int getDayOfWeekMask(int firstEpochDay, int daysInMonth, int[] daysOfWeek, int[] ordinals){
+        int mask = 0;
+        for(int i = 0; i < daysOfWeek.length; i++){
+            mask |= getDayOfWeekMask(firstEpochDay, daysInMonth, daysOfWeek[i], ordinals == null ? 0 : ordinals[i]);
+        }
+        return mask;
+    }
+
+    /**
+     * @param ordinal 0 for all the matching days, n for the nth and -n for the nth last
+     */
+    private static int getDayOfWeekMask(int firstEpochDay, int daysInMonth, int dayOfWeek, int ordinal){
+        int firstDayOfWeek = FlexibleCalendarHelper.getDayOfWeek(firstEpochDay);
+        int firstMatch = 1 + (dayOfWeek - firstDayOfWeek + 7) % 7;
+        if(ordinal == 0){
+            int mask = 0;
+            for(int day = firstMatch; day <= daysInMonth; day += 7){
+                mask |= 1 << (day - 1);
+            }
+            return mask;
+        }
+        int day;
+        if(ordinal > 0){
+            day = firstMatch + (ordinal - 1) * 7;
+        }else{
+            int lastMatch = firstMatch + ((daysInMonth - firstMatch) / 7) * 7;
+            day = lastMatch + (ordinal + 1) * 7;
+        }
+        return day >= 1 && day <= daysInMonth ? 1 << (day - 1) : 0;
+    }
+
+    private static int getAllDaysMask(int days){
+        return days >= 32 ? -1 : (1 << days) - 1;
+    }
+
+    /**
+     * Index of the week starting on MONDAY containing the epoch day
+     */
+    private static int getWeekIndex(int epochDay){
+        // 1970-01-01 was a thursday, the monday of the week was epoch day -3
+        int shifted = epochDay + 3;
+        return shifted >= 0 ? shifted / 7 : (shifted - 6) / 7;
+    }
+
+    @Frequency
+    private static int parseFrequency(String frequency){
+        switch (frequency){
+            case "DAILY":
+                return DAILY;
+            case "WEEKLY":
+                return WEEKLY;
+            case "MONTHLY":
+                return MONTHLY;
+            case "YEARLY":
+                return YEARLY;
+            default:
+                throw new IllegalArgumentException("Unsupported frequency " + frequency);
+        }
+    }
+
+    private static int parseDayOfWeek(String code){
+        for(int i = 0; i < WEEKDAY_CODES.length; i++){
+            if(WEEKDAY_CODES[i].equals(code)){
+                return Calendar.SUNDAY + i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid day of week " + code);
+    }
+
+    /**
+     * Parse a date in the yyyyMMdd form, ignoring the time if present
+     * @return year, month and day
+     */
+    private static int[] parseDate(String value){
+        if(value.length() < 8){
+            throw new IllegalArgumentException("Invalid date " + value);
+        }
+        return new int[]{Integer.parseInt(value.substring(0, 4)),
+                Integer.parseInt(value.substring(4, 6)) - 1,
+                Integer.parseInt(value.substring(6, 8))};
+    }
+}
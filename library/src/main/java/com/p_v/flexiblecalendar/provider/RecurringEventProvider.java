@@ -0,0 +1,235 @@
+package com.p_v.flexiblecalendar.provider;
+
+import android.util.LruCache;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.FlexibleCalendarView;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.entity.EventsByDay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event provider for repeating events defined by a {@link RecurrenceRule}.
+ * <p>
+ * Occurrences are never materialized for the whole recurrence. They are expanded
+ * only for the month being displayed and the expansion is memoized per month in
+ * a bounded LRU cache, so the memory used depends on the visible months and not
+ * on how long the events repeat.
+ *
+ * @author p-v
+ */
+public class RecurringEventProvider implements FlexibleCalendarView.EventDataProvider,
+        FlexibleCalendarView.EventRangeDataProvider, FlexibleCalendarView.EventCountDataProvider,
+        FlexibleCalendarView.EventDayMaskProvider {
+
+    private static final int DEFAULT_MEMOIZED_MONTHS = 12;
+
+    private final List<RecurringEvent> recurringEvents;
+    private final LruCache<Integer, EventsByDay> expandedMonths;
+
+    public RecurringEventProvider(){
+        this(DEFAULT_MEMOIZED_MONTHS);
+    }
+
+    /**
+     * @param memoizedMonths maximum number of expanded months kept in memory
+     */
+    public RecurringEventProvider(int memoizedMonths){
+        this.recurringEvents = new ArrayList<>();
+        this.expandedMonths = new LruCache<>(memoizedMonths);
+    }
+
+    /**
+     * Add a repeating event
+     * @param event the event
+     * @param startYear year of the first occurrence
+     * @param startMonth month of the first occurrence
+     * @param startDay day of the first occurrence
+     * @param rule recurrence rule
+     */
+    public synchronized void add(Event event, int startYear, int startMonth, int startDay, RecurrenceRule rule){
+        recurringEvents.add(new RecurringEvent(event,
+                FlexibleCalendarHelper.toEpochDay(startYear, startMonth, startDay), rule));
+        expandedMonths.evictAll();
+    }
+
+    /**
+     * Remove the repeating event
+     * @return true if the event was present
+     */
+    public synchronized boolean remove(Event event){
+        boolean removed = false;
+        for(int i = recurringEvents.size() - 1; i >= 0; i--){
+            if(recurringEvents.get(i).event == event){
+                recurringEvents.remove(i);
+                removed = true;
+            }
+        }
+        if(removed){
+            expandedMonths.evictAll();
+        }
+        return removed;
+    }
+
+    /**
+     * Discard the memoized expansions, required if a rule is modified after adding it
+     */
+    public synchronized void invalidate(){
+        expandedMonths.evictAll();
+    }
+
+    @Override
+    public synchronized List<? extends Event> getEventsForTheDay(int year, int month, int day) {
+        return getMonthEvents(year, month).get(year, month, day);
+    }
+
+    @Override
+    public synchronized int getEventDayMask(int year, int month) {
+        EventsByDay monthEvents = getMonthEvents(year, month);
+        int mask = 0;
+        for(int i = 0; i < monthEvents.size(); i++){
+            mask |= 1 << (EventsByDay.getDay(monthEvents.keyAt(i)) - 1);
+        }
+        return mask;
+    }
+
+    @Override
+    public synchronized int getEventCountForTheDay(int year, int month, int day, int[] colors) {
+        List<? extends Event> events = getMonthEvents(year, month).get(year, month, day);
+        if(events == null) return 0;
+        for(int i = 0, n = Math.min(events.size(), colors.length); i < n; i++){
+            colors[i] = events.get(i).getColor();
+        }
+        return events.size();
+    }
+
+    @Override
+    public synchronized EventsByDay getEventsForTheRange(int startYear, int startMonth, int startDay,
+                                                         int endYear, int endMonth, int endDay) {
+        int startKey = startYear * 12 + startMonth;
+        int endKey = endYear * 12 + endMonth;
+        if(startKey == endKey && startDay == 1
+                && endDay == FlexibleCalendarHelper.getDaysInMonth(endYear, endMonth)){
+            return getMonthEvents(startYear, startMonth);
+        }
+
+        EventsByDay result = new EventsByDay();
+        for(int key = startKey; key <= endKey; key++){
+            int year = key / 12;
+            int month = key % 12;
+            EventsByDay monthEvents = getMonthEvents(year, month);
+            int fromDay = key == startKey ? startDay : 1;
+            int toDay = key == endKey ? endDay : FlexibleCalendarHelper.getDaysInMonth(year, month);
+            for(int i = 0; i < monthEvents.size(); i++){
+                int day = EventsByDay.getDay(monthEvents.keyAt(i));
+                if(day >= fromDay && day <= toDay){
+                    result.put(monthEvents.keyAt(i), monthEvents.valueAt(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    private EventsByDay getMonthEvents(int year, int month){
+        Integer key = year * 12 + month;
+        EventsByDay monthEvents = expandedMonths.get(key);
+        if(monthEvents == null){
+            monthEvents = expandMonth(year, month);
+            expandedMonths.put(key, monthEvents);
+        }
+        return monthEvents;
+    }
+
+    private EventsByDay expandMonth(int year, int month){
+        int daysInMonth = FlexibleCalendarHelper.getDaysInMonth(year, month);
+        @SuppressWarnings("unchecked")
+        List<Event>[] dayEvents = new List[daysInMonth];
+        for(RecurringEvent recurringEvent : recurringEvents){
+            int mask = recurringEvent.getOccurrences(year, month);
+            while(mask != 0){
+                int dayIndex = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                if(dayEvents[dayIndex] == null){
+                    dayEvents[dayIndex] = new ArrayList<>(2);
+                }
+                dayEvents[dayIndex].add(recurringEvent.event);
+            }
+        }
+
+        EventsByDay eventsByDay = new EventsByDay();
+        for(int i = 0; i < daysInMonth; i++){
+            if(dayEvents[i] != null){
+                eventsByDay.put(year, month, i + 1, Collections.unmodifiableList(dayEvents[i]));
+            }
+        }
+        //the memoized month is returned as is for the whole month
+        return eventsByDay.freeze();
+    }
+
+    private static class RecurringEvent {
+
+        final Event event;
+        final int startEpochDay;
+        final RecurrenceRule rule;
+
+        /*
+         * Number of occurrences before countedMonthKey, remembered so that
+         * consecutive months do not count the occurrences from the start again
+         */
+        int countedMonthKey;
+        int occurrencesBefore;
+
+        RecurringEvent(Event event, int startEpochDay, RecurrenceRule rule){
+            this.event = event;
+            this.startEpochDay = startEpochDay;
+            this.rule = rule;
+            int[] start = new int[3];
+            FlexibleCalendarHelper.fromEpochDay(startEpochDay, start);
+            this.countedMonthKey = start[0] * 12 + start[1];
+        }
+
+        /**
+         * @return bit mask of the days of the month having an occurrence
+         */
+        int getOccurrences(int year, int month){
+            int mask = rule.getRawOccurrences(startEpochDay, year, month);
+            if(mask == 0) return 0;
+
+            int count = rule.getCount();
+            if(count > 0){
+                int before = countOccurrencesBefore(year * 12 + month, count);
+                if(before >= count) return 0;
+                // keep only the remaining occurrences
+                int remaining = count - before;
+                int limited = 0;
+                while(mask != 0 && remaining-- > 0){
+                    int lowest = mask & -mask;
+                    limited |= lowest;
+                    mask &= mask - 1;
+                }
+                mask = limited;
+            }
+            return rule.removeExcludedDates(mask, year, month);
+        }
+
+        private int countOccurrencesBefore(int monthKey, int count){
+            int[] start = new int[3];
+            FlexibleCalendarHelper.fromEpochDay(startEpochDay, start);
+            int startMonthKey = start[0] * 12 + start[1];
+            if(monthKey < countedMonthKey){
+                countedMonthKey = startMonthKey;
+                occurrencesBefore = 0;
+            }
+            // occurrences never decrease, stop counting once the count is reached
+            while(countedMonthKey < monthKey && occurrencesBefore < count){
+                occurrencesBefore += Integer.bitCount(rule.getRawOccurrences(startEpochDay,
+                        countedMonthKey / 12, countedMonthKey % 12));
+                countedMonthKey++;
+            }
+            return occurrencesBefore;
+        }
+    }
+}
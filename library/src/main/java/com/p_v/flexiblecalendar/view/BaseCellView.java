@@ -3,6 +3,7 @@ package com.p_v.flexiblecalendar.view;
 import android.content.Context;
 import android.support.annotation.IntDef;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.widget.TextView;
 
 import com.p_v.flexiblecalendar.entity.Event;
@@ -10,8 +11,11 @@ import com.p_v.fliexiblecalendar.R;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -34,41 +38,94 @@ public abstract class BaseCellView extends TextView {
     public static final int STATE_SELECTED = R.attr.state_date_selected;
     public static final int STATE_OUTSIDE_MONTH = R.attr.state_date_outside_month;
 
+    /**
+     * States having a bit in the state mask, the index of the state is its bit.
+     * The states of the calendar are registered first, custom states are registered when first added
+     */
+    private static int[] registeredStates = {STATE_TODAY, STATE_REGULAR, STATE_SELECTED, STATE_OUTSIDE_MONTH};
+
+    /**
+     * State arrays shared by all the cells, keyed by the state mask
+     */
+    private static final SparseArray<int[]> STATE_ARRAYS = new SparseArray<>();
+
+    private int stateMask;
     private Set<Integer> stateSet;
 
     public BaseCellView(Context context) {
         super(context);
-        stateSet = new HashSet<>(3);
     }
 
     public BaseCellView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        stateSet = new HashSet<>(3);
     }
 
     public BaseCellView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        stateSet = new HashSet<>(3);
     }
 
     public void addState(int state){
-        stateSet.add(state);
+        stateMask |= getStateBit(state, true);
     }
 
     public void clearAllStates(){
-        stateSet.clear();
+        stateMask = 0;
+    }
+
+    /**
+     * @return true if the state is added to the cell
+     */
+    public boolean hasState(int state){
+        return (stateMask & getStateBit(state, false)) != 0;
+    }
+
+    /**
+     * @return mask of the states added to the cell, see {@link #getStateBit(int)}
+     */
+    public int getStateMask(){
+        return stateMask;
+    }
+
+    /**
+     * @return bit of the state in the state mask, 0 if the state was never added to a cell
+     */
+    public static int getStateBit(int state){
+        return getStateBit(state, false);
+    }
+
+    private static int getStateBit(int state, boolean register){
+        for(int i = 0; i < registeredStates.length; i++){
+            if(registeredStates[i] == state) return 1 << i;
+        }
+        if(!register) return 0;
+        if(registeredStates.length == Integer.SIZE){
+            throw new IllegalStateException("Cannot add more than " + Integer.SIZE + " cell states");
+        }
+        registeredStates = Arrays.copyOf(registeredStates, registeredStates.length + 1);
+        registeredStates[registeredStates.length - 1] = state;
+        return 1 << (registeredStates.length - 1);
+    }
+
+    /**
+     * @return shared array of the states of the mask
+     */
+    private static int[] getStates(int mask){
+        int[] states = STATE_ARRAYS.get(mask);
+        if(states == null){
+            states = new int[Integer.bitCount(mask)];
+            for(int i = 0, j = 0; i < registeredStates.length; i++){
+                if((mask & (1 << i)) != 0) states[j++] = registeredStates[i];
+            }
+            STATE_ARRAYS.put(mask, states);
+        }
+        return states;
     }
 
     @Override
     protected int[] onCreateDrawableState(int extraSpace) {
-        if(stateSet==null) stateSet = new HashSet<>(3);
-        if(!stateSet.isEmpty()){
-            final int[] drawableState = super.onCreateDrawableState(extraSpace + stateSet.size());
-            int[] states = new int[stateSet.size()];
-            int i = 0;
-            for(Integer s : stateSet){
-                states[i++] = s;
-            }
+        if(stateMask != 0){
+            int[] states = getStates(stateMask);
+            final int[] drawableState = super.onCreateDrawableState(extraSpace + states.length);
             mergeDrawableStates(drawableState,states);
             return drawableState;
         }else{
@@ -78,8 +135,78 @@ public abstract class BaseCellView extends TextView {
 
     public abstract void setEvents(List<? extends Event> colorList);
 
+    /**
+     * @return set view of the states of the cell, backed by the state mask.
+     * Use {@link #hasState(int)} for checking the states without the set
+     */
     public Set<Integer> getStateSet(){
+        if(stateSet == null){
+            stateSet = new StateSet();
+        }
         return stateSet;
     }
 
+    /**
+     * Set of the states backed by the state mask of the cell
+     */
+    private class StateSet extends AbstractSet<Integer> {
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Integer && hasState((Integer) o);
+        }
+
+        @Override
+        public boolean add(Integer state) {
+            if(hasState(state)) return false;
+            addState(state);
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if(!contains(o)) return false;
+            stateMask &= ~getStateBit((Integer) o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            clearAllStates();
+        }
+
+        @Override
+        public int size() {
+            return Integer.bitCount(stateMask);
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int remaining = stateMask;
+                private int last;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining != 0;
+                }
+
+                @Override
+                public Integer next() {
+                    if(remaining == 0) throw new NoSuchElementException();
+                    last = Integer.lowestOneBit(remaining);
+                    remaining &= ~last;
+                    return registeredStates[Integer.numberOfTrailingZeros(last)];
+                }
+
+                @Override
+                public void remove() {
+                    if(last == 0) throw new IllegalStateException();
+                    stateMask &= ~last;
+                    last = 0;
+                }
+            };
+        }
+    }
+
 }
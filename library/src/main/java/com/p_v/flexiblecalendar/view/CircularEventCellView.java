@@ -3,16 +3,13 @@ package com.p_v.flexiblecalendar.view;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.Rect;
 import android.util.AttributeSet;
 
 import com.p_v.flexiblecalendar.entity.Event;
 import com.p_v.fliexiblecalendar.R;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * @author p-v
@@ -22,8 +19,12 @@ public class CircularEventCellView extends BaseCellView {
     private int eventCircleY;
     private int radius;
     private int padding;
-    private int leftMostPosition = Integer.MIN_VALUE;
-    private List<Paint> paintList;
+    private int leftMostPosition;
+    /**
+     * Resolved colors of the events, only the first eventCount colors are valid
+     */
+    private int[] eventColors;
+    private int eventCount;
 
     public CircularEventCellView(Context context) {
         super(context);
@@ -52,30 +53,24 @@ public class CircularEventCellView extends BaseCellView {
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
+        updateEventGeometry();
+    }
 
-        Set<Integer> stateSet = getStateSet();
-
-        //initialize paint objects only if there is no state or just one state i.e. the regular day state
-        if((stateSet==null || stateSet.isEmpty()
-                ||(stateSet.size() ==1 && stateSet.contains(STATE_REGULAR))) && paintList!=null) {
-            int num = paintList.size();
-
-            Paint p = new Paint();
-            p.setTextSize(getTextSize());
-
-            Rect rect = new Rect();
-            p.getTextBounds("31", 0, 1, rect); // measuring using fake text
+    /**
+     * Compute the position of the event circles from the current size of the cell.
+     * The decoration never changes the size of the cell so no layout is needed
+     */
+    private void updateEventGeometry(){
+        int num = eventCount;
 
-            eventCircleY = (3 * getHeight() + rect.height()) / 4;
+        Rect rect = PaintCache.getDigitBounds(getTextSize());
 
-            //calculate left most position for the circle
-            if (leftMostPosition == Integer.MIN_VALUE) {
-                leftMostPosition = (getWidth() / 2) - (num / 2) * 2 * (padding + radius);
-                if (num % 2 == 0) {
-                    leftMostPosition = leftMostPosition + radius + padding;
-                }
-            }
+        eventCircleY = (3 * getHeight() + rect.height()) / 4;
 
+        //calculate left most position for the circle
+        leftMostPosition = (getWidth() / 2) - (num / 2) * 2 * (padding + radius);
+        if (num % 2 == 0) {
+            leftMostPosition = leftMostPosition + radius + padding;
         }
     }
 
@@ -83,18 +78,20 @@ public class CircularEventCellView extends BaseCellView {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        Set<Integer> stateSet = getStateSet();
-
         // draw only if there is no state or just one state i.e. the regular day state
-        if((stateSet==null || stateSet.isEmpty() || (stateSet.size() ==1
-                && stateSet.contains(STATE_REGULAR))) && paintList!=null) {
-            int num = paintList.size();
+        if(hasNoStateButRegular() && eventColors!=null) {
+            int num = eventCount;
             for (int i=0;i<num;i++) {
-                canvas.drawCircle(calculateStartPoint(i), eventCircleY, radius, paintList.get(i));
+                canvas.drawCircle(calculateStartPoint(i), eventCircleY, radius,
+                        PaintCache.getFillPaint(eventColors[i]));
             }
         }
     }
 
+    private boolean hasNoStateButRegular(){
+        return (getStateMask() & ~getStateBit(STATE_REGULAR)) == 0;
+    }
+
     private int calculateStartPoint(int offset){
         return leftMostPosition + offset *(2*(radius+padding)) ;
     }
@@ -102,15 +99,16 @@ public class CircularEventCellView extends BaseCellView {
     @Override
     public void setEvents(List<? extends Event> colorList){
         if(colorList!=null){
-            paintList = new ArrayList<>(colorList.size());
-            for(Event e: colorList){
-                Paint eventPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-                eventPaint.setStyle(Paint.Style.FILL);
-                eventPaint.setColor(getContext().getResources().getColor(e.getColor()));
-                paintList.add(eventPaint);
+            int num = colorList.size();
+            if(eventColors==null || eventColors.length<num){
+                eventColors = new int[num];
+            }
+            for(int i=0;i<num;i++){
+                eventColors[i] = PaintCache.getColor(getResources(), colorList.get(i).getColor());
             }
+            eventCount = num;
+            updateEventGeometry();
             invalidate();
-            requestLayout();
         }
     }
 
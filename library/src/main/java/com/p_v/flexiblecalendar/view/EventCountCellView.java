@@ -17,11 +17,16 @@ import java.util.List;
  *
  * @author p-v
  */
-public class EventCountCellView extends BaseCellView{
+public class EventCountCellView extends BaseCellView implements IEventCountCellView{
 
     private Paint mPaint;
     private Paint mTextPaint;
     private int mEventCount;
+    /**
+     * Digits of the event count, kept for drawing the count without creating a string
+     */
+    private final char[] mCountText = new char[10];
+    private int mCountTextStart = mCountText.length;
     private int eventCircleY;
     private int eventCircleX;
     private int mTextY;
@@ -62,24 +67,28 @@ public class EventCountCellView extends BaseCellView{
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        if(mEventCount>0) {
-            Paint p = new Paint();
-            p.setTextSize(getTextSize());
+        updateEventGeometry();
+    }
 
-            Rect rect = new Rect();
-            p.getTextBounds("31", 0, 1, rect); // measuring using fake text
+    /**
+     * Compute the position of the count badge from the current size of the cell.
+     * The decoration never changes the size of the cell so no layout is needed
+     */
+    private void updateEventGeometry(){
+        Rect rect = PaintCache.getDigitBounds(getTextSize());
 
-            eventCircleY = (getHeight() - rect.height()) / 4;
-            eventCircleX = (3 * getWidth() + rect.width()) / 4;
+        eventCircleY = (getHeight() - rect.height()) / 4;
+        eventCircleX = (3 * getWidth() + rect.width()) / 4;
 
+        if(mTextPaint==null){
             mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
             mTextPaint.setStyle(Paint.Style.FILL);
-            mTextPaint.setTextSize(eventTextSize==-1?getTextSize() / 2 : eventTextSize);
             mTextPaint.setColor(eventTextColor);
             mTextPaint.setTextAlign(Paint.Align.CENTER);
-
-            mTextY = eventCircleY + radius/2;
         }
+        mTextPaint.setTextSize(eventTextSize==-1?getTextSize() / 2 : eventTextSize);
+
+        mTextY = eventCircleY + radius/2;
     }
 
     @Override
@@ -92,19 +101,42 @@ public class EventCountCellView extends BaseCellView{
         super.onDraw(canvas);
         if(mEventCount>0 && mPaint!=null && mTextPaint!= null) {
             canvas.drawCircle(eventCircleX, eventCircleY, radius, mPaint);
-            canvas.drawText(String.valueOf(mEventCount), eventCircleX, mTextY, mTextPaint);
+            canvas.drawText(mCountText, mCountTextStart, mCountText.length - mCountTextStart,
+                    eventCircleX, mTextY, mTextPaint);
         }
     }
 
     @Override
     public void setEvents(List<? extends Event> colorList) {
         if(colorList!=null && !colorList.isEmpty()){
-            mEventCount = colorList.size();
-            mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            mPaint.setStyle(Paint.Style.FILL);
-            mPaint.setColor(eventBackground);
+            setEventCount(colorList.size(), null);
+        }
+    }
+
+    @Override
+    public int getMaxEventColors() {
+        return 0;
+    }
+
+    @Override
+    public void setEventCount(int count, int[] colors) {
+        if(count>0){
+            if(count!=mEventCount){
+                mCountTextStart = mCountText.length;
+                for(int n = count; n > 0; n /= 10){
+                    mCountText[--mCountTextStart] = (char)('0' + n % 10);
+                }
+            }
+            mEventCount = count;
+            mPaint = PaintCache.getFillPaint(eventBackground);
+            if(mTextPaint==null){
+                updateEventGeometry();
+            }
+            invalidate();
+        }else if(mEventCount>0){
+            //events removed from the day
+            mEventCount = 0;
             invalidate();
-            requestLayout();
         }
     }
 }
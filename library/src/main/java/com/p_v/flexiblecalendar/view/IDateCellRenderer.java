@@ -0,0 +1,28 @@
+package com.p_v.flexiblecalendar.view;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import com.p_v.flexiblecalendar.entity.Event;
+
+import java.util.List;
+
+/**
+ * Draws the date cells of a canvas rendered month page. Used instead of the cell views
+ * of {@link IDateCellViewDrawer} when the calendar renders the month pages on a single view
+ *
+ * @author p-v
+ */
+public interface IDateCellRenderer {
+    /**
+     * Draw the date cell
+     *
+     * @param canvas canvas of the month page
+     * @param bounds bounds of the cell on the canvas
+     * @param day day of the month
+     * @param cellType type of the cell
+     * @param events events of the day, null if the day has no events or the cell is not decorated
+     */
+    void drawCell(Canvas canvas, Rect bounds, int day, @BaseCellView.CellType int cellType,
+                  List<? extends Event> events);
+}
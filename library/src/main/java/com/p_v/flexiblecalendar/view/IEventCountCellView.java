@@ -0,0 +1,28 @@
+package com.p_v.flexiblecalendar.view;
+
+/**
+ * Implemented by cell views which only display the number of events of the day and
+ * the colors of the first few events. Such cells are decorated with
+ * {@link #setEventCount(int, int[])} instead of
+ * {@link BaseCellView#setEvents(java.util.List)}, so that the events of the day
+ * do not have to be fetched as a list
+ *
+ * @author p-v
+ */
+public interface IEventCountCellView {
+
+    /**
+     * @return maximum number of event colors displayed by the cell, 0 if the cell
+     * displays only the count
+     */
+    int getMaxEventColors();
+
+    /**
+     * Decorate the cell with the events of the day
+     *
+     * @param count number of events of the day, 0 if there are no events
+     * @param colors color resources of the first min(count, {@link #getMaxEventColors()})
+     *               events. The array is reused for other cells and must not be kept
+     */
+    void setEventCount(int count, int[] colors);
+}
@@ -0,0 +1,127 @@
+package com.p_v.flexiblecalendar.view;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.annotation.ColorRes;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Process wide cache of the objects used for drawing the events of the cells.
+ * Cells sharing the same event colors and text size share the same objects, so binding
+ * and drawing the events does not allocate.
+ * <p>
+ * Must be used from the main thread only. The returned objects are shared and read only, changing
+ * a returned paint or bounds changes them for all the cells.
+ *
+ * @author p-v
+ */
+public final class PaintCache {
+
+    /**
+     * Anti aliased fill paints keyed by the resolved color
+     */
+    private static final SparseArray<Paint> fillPaints = new SparseArray<>();
+
+    /**
+     * Resolved colors keyed by the color resource
+     */
+    private static final SparseIntArray resolvedColors = new SparseIntArray();
+
+    /**
+     * Resources and configuration the colors were resolved with, the colors are resolved
+     * again when the resources or the configuration change, for example with the night mode
+     */
+    private static WeakReference<Resources> colorResources;
+    private static Configuration colorConfiguration;
+
+    /**
+     * Bounds of a digit keyed by the bits of the text size
+     */
+    private static final SparseArray<Rect> digitBounds = new SparseArray<>();
+
+    private static Paint measurePaint;
+
+    private PaintCache(){
+    }
+
+    /**
+     * @param color resolved color
+     * @return anti aliased paint filling with the color. The paint is shared, read only
+     */
+    public static Paint getFillPaint(int color){
+        Paint paint = fillPaints.get(color);
+        if(paint == null){
+            paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setStyle(Paint.Style.FILL);
+            paint.setColor(color);
+            fillPaints.put(color, paint);
+        }
+        return paint;
+    }
+
+    /**
+     * Resolve the color resource, the resolved color is cached for the later calls
+     * with the same resources and configuration
+     * @param resources resources
+     * @param colorRes color resource
+     * @return resolved color
+     */
+    @SuppressWarnings("deprecation")
+    public static int getColor(Resources resources, @ColorRes int colorRes){
+        Configuration configuration = resources.getConfiguration();
+        if(colorResources == null || colorResources.get() != resources || colorConfiguration == null || colorConfiguration.diff(configuration) != 0){
+            resolvedColors.clear();
+            colorResources = new WeakReference<>(resources);
+            if(colorConfiguration == null){
+                colorConfiguration = new Configuration(configuration);
+            }else{
+                colorConfiguration.setTo(configuration);
+            }
+        }
+        int index = resolvedColors.indexOfKey(colorRes);
+        if(index >= 0){
+            return resolvedColors.valueAt(index);
+        }
+        int color = resources.getColor(colorRes);
+        resolvedColors.put(colorRes, color);
+        return color;
+    }
+
+    /**
+     * Bounds of a single digit drawn with the default typeface, used for positioning
+     * the events relative to the date text
+     * @param textSize text size in pixels
+     * @return digit bounds
+     */
+    public static Rect getDigitBounds(float textSize){
+        int key = Float.floatToIntBits(textSize);
+        Rect bounds = digitBounds.get(key);
+        if(bounds == null){
+            if(measurePaint == null){
+                measurePaint = new Paint();
+            }
+            measurePaint.setTextSize(textSize);
+            bounds = new Rect();
+            measurePaint.getTextBounds("31", 0, 1, bounds); // measuring using fake text
+            digitBounds.put(key, bounds);
+        }
+        return bounds;
+    }
+
+    /**
+     * Clear the cache. The colors are resolved again on configuration changes without clearing
+     * the cache, clearing is only needed for releasing the cached objects
+     */
+    public static void clear(){
+        fillPaints.clear();
+        resolvedColors.clear();
+        colorResources = null;
+        colorConfiguration = null;
+        digitBounds.clear();
+    }
+}
@@ -0,0 +1,143 @@
+package com.p_v.flexiblecalendar.view.impl;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.DrawableRes;
+import android.support.v4.content.ContextCompat;
+
+import com.p_v.flexiblecalendar.FlexibleCalendarHelper;
+import com.p_v.flexiblecalendar.entity.Event;
+import com.p_v.flexiblecalendar.view.BaseCellView;
+import com.p_v.flexiblecalendar.view.IDateCellRenderer;
+import com.p_v.flexiblecalendar.view.PaintCache;
+import com.p_v.fliexiblecalendar.R;
+
+import java.util.List;
+
+/**
+ * Default date cell renderer drawing the cells like the default
+ * {@link com.p_v.flexiblecalendar.view.SquareCellView}: the state background,
+ * the centered day and a circle for every event of the regular days
+ *
+ * @author p-v
+ */
+public class DateCellRendererImpl implements IDateCellRenderer {
+
+    private static final float DEFAULT_TEXT_SIZE_SP = 14;
+
+    private final int[] todayStates = {BaseCellView.STATE_TODAY};
+    private final int[] selectedStates = {BaseCellView.STATE_SELECTED};
+    private final int[] selectedTodayStates = {BaseCellView.STATE_TODAY, BaseCellView.STATE_SELECTED};
+    private final int[] regularStates = {BaseCellView.STATE_REGULAR};
+    private final int[] outsideMonthStates = {BaseCellView.STATE_OUTSIDE_MONTH};
+
+    private final Resources resources;
+    private Drawable cellBackground;
+    private final Paint textPaint;
+    private int textColor = Color.BLACK;
+    private int outsideMonthTextColor = Color.BLACK;
+    private int eventRadius = 5;
+    private int eventPadding = 1;
+
+    public DateCellRendererImpl(Context context){
+        this(context, R.drawable.cell_background);
+    }
+
+    /**
+     * @param context context
+     * @param cellBackground state list drawable for the cell background, see {@link BaseCellView#STATE_TODAY}
+     */
+    public DateCellRendererImpl(Context context, @DrawableRes int cellBackground){
+        this.resources = context.getResources();
+        setCellBackground(ContextCompat.getDrawable(context, cellBackground));
+        textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(DEFAULT_TEXT_SIZE_SP * resources.getDisplayMetrics().scaledDensity);
+    }
+
+    /**
+     * @param cellBackground state list drawable for the cell background, null for no background
+     */
+    public void setCellBackground(Drawable cellBackground){
+        this.cellBackground = cellBackground == null ? null : cellBackground.mutate();
+    }
+
+    public void setTextColor(int textColor){
+        this.textColor = textColor;
+    }
+
+    public void setOutsideMonthTextColor(int outsideMonthTextColor){
+        this.outsideMonthTextColor = outsideMonthTextColor;
+    }
+
+    /**
+     * @param textSize text size in pixels
+     */
+    public void setTextSize(float textSize){
+        textPaint.setTextSize(textSize);
+    }
+
+    /**
+     * @param eventRadius radius of the event circle in pixels
+     */
+    public void setEventRadius(int eventRadius){
+        this.eventRadius = eventRadius;
+    }
+
+    /**
+     * @param eventPadding padding around the event circle in pixels
+     */
+    public void setEventPadding(int eventPadding){
+        this.eventPadding = eventPadding;
+    }
+
+    @Override
+    public void drawCell(Canvas canvas, Rect bounds, int day, @BaseCellView.CellType int cellType,
+                         List<? extends Event> events) {
+        if(cellBackground != null){
+            cellBackground.setState(getStates(cellType));
+            cellBackground.setBounds(bounds);
+            cellBackground.draw(canvas);
+        }
+
+        textPaint.setColor(cellType == BaseCellView.OUTSIDE_MONTH ? outsideMonthTextColor : textColor);
+        float baseline = bounds.centerY() - (textPaint.ascent() + textPaint.descent()) / 2;
+        canvas.drawText(FlexibleCalendarHelper.getDayText(day), bounds.centerX(), baseline, textPaint);
+
+        // events are drawn only on the regular days
+        if(cellType == BaseCellView.REGULAR && events != null && !events.isEmpty()){
+            int num = events.size();
+            Rect digitBounds = PaintCache.getDigitBounds(textPaint.getTextSize());
+            int circleY = bounds.top + (3 * bounds.height() + digitBounds.height()) / 4;
+            int leftMostPosition = bounds.centerX() - (num / 2) * 2 * (eventPadding + eventRadius);
+            if(num % 2 == 0){
+                leftMostPosition = leftMostPosition + eventRadius + eventPadding;
+            }
+            for(int i = 0; i < num; i++){
+                int color = PaintCache.getColor(resources, events.get(i).getColor());
+                canvas.drawCircle(leftMostPosition + i * 2 * (eventRadius + eventPadding), circleY,
+                        eventRadius, PaintCache.getFillPaint(color));
+            }
+        }
+    }
+
+    private int[] getStates(@BaseCellView.CellType int cellType){
+        switch (cellType){
+            case BaseCellView.SELECTED_TODAY:
+                return selectedTodayStates;
+            case BaseCellView.TODAY:
+                return todayStates;
+            case BaseCellView.SELECTED:
+                return selectedStates;
+            case BaseCellView.OUTSIDE_MONTH:
+                return outsideMonthStates;
+            default:
+                return regularStates;
+        }
+    }
+}